@@ -0,0 +1,153 @@
+package bench;
+
+import game.Direction;
+import game.GameEngine;
+import game.HeadlessGame;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that the steady-state tick path doesn't allocate: runs MEASURED_TICKS of the game's own tick through a
+ * HeadlessGame (input queue, engine step, replay recording, snapshot publishing, game events and metrics) after a
+ * warmup, and exits with status 1 if the ticks that only moved the snake allocated more than
+ * MOVE_ALLOCATION_BUDGET_BYTES in total. Eating posts a score update to the event dispatch thread, and
+ * SwingUtilities.invokeLater() allocates the event it queues, so ticks that eat are held to
+ * EAT_ALLOCATION_BUDGET_BYTES each instead. A long game also fills the replay recorder's buffer now and then, the
+ * ticks that double it may allocate no more than the new buffer. Ticks that end a game are only reported. The snake
+ * follows a BoardCycle, so it keeps eating and growing without ever colliding.
+ */
+public class AllocationCheck
+{
+    private static final int WARMUP_TICKS = 200_000, MEASURED_TICKS = 1_000_000;
+    private static final long MOVE_ALLOCATION_BUDGET_BYTES = 16 * 1024;
+    private static final long EAT_ALLOCATION_BUDGET_BYTES = 512;
+    private static final long ARRAY_OVERHEAD_BYTES = 64;
+
+    private final com.sun.management.ThreadMXBean allocationMXBean;
+    private final long threadId = Thread.currentThread().getId();
+    private final HeadlessGame headlessGame = new HeadlessGame();
+    private final BoardCycle boardCycle = new BoardCycle(true);
+    private long measurementOverheadBytes;
+    private long moveTicks, moveBytes, eatTicks, eatBytes, growthTicks, growthBytes, growthBudgetBytes, endTicks, endBytes;
+
+    private AllocationCheck(com.sun.management.ThreadMXBean allocationMXBean)
+    {
+        this.allocationMXBean = allocationMXBean;
+    }
+
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+        {
+            System.out.println("This JVM can't measure thread allocations.");
+            System.exit(2);
+        }
+
+        AllocationCheck allocationCheck = new AllocationCheck((com.sun.management.ThreadMXBean)threadMXBean);
+        allocationCheck.headlessGame.getSnakeGame().getMetrics().setEnabled(true);
+        allocationCheck.headlessGame.start();
+
+        allocationCheck.runTicks(WARMUP_TICKS);
+        allocationCheck.resetCounts();
+        allocationCheck.runTicks(MEASURED_TICKS);
+
+        System.out.println(String.format("%d moving ticks allocated %d bytes (%.4f bytes/tick, budget %d bytes)",
+            allocationCheck.moveTicks, allocationCheck.moveBytes, (double)allocationCheck.moveBytes / Math.max(1, allocationCheck.moveTicks), MOVE_ALLOCATION_BUDGET_BYTES));
+        System.out.println(String.format("%d eating ticks allocated %d bytes (%.1f bytes/tick, budget %d bytes/tick)",
+            allocationCheck.eatTicks, allocationCheck.eatBytes, (double)allocationCheck.eatBytes / Math.max(1, allocationCheck.eatTicks), EAT_ALLOCATION_BUDGET_BYTES));
+        System.out.println(String.format("%d ticks grew the replay buffer, allocating %d bytes (budget %d bytes)",
+            allocationCheck.growthTicks, allocationCheck.growthBytes, allocationCheck.growthBudgetBytes));
+        System.out.println(String.format("%d game ending ticks allocated %d bytes, snake length %d",
+            allocationCheck.endTicks, allocationCheck.endBytes, allocationCheck.headlessGame.getEngine().getSnake().getLength()));
+
+        allocationCheck.headlessGame.shutdown();
+
+        boolean failed = false;
+
+        if (allocationCheck.moveBytes > MOVE_ALLOCATION_BUDGET_BYTES)
+        {
+            System.out.println("FAILED: the tick path allocates while moving.");
+            failed = true;
+        }
+
+        if (allocationCheck.eatBytes > EAT_ALLOCATION_BUDGET_BYTES * allocationCheck.eatTicks)
+        {
+            System.out.println("FAILED: the tick path allocates more than the score update when eating.");
+            failed = true;
+        }
+
+        if (allocationCheck.growthBytes > allocationCheck.growthBudgetBytes)
+        {
+            System.out.println("FAILED: the tick path allocates more than the replay buffer when the buffer grows.");
+            failed = true;
+        }
+
+        System.exit(failed ? 1 : 0);
+    }
+
+    private void resetCounts()
+    {
+        moveTicks = moveBytes = eatTicks = eatBytes = growthTicks = growthBytes = growthBudgetBytes = endTicks = endBytes = 0;
+
+        // Reading the counter may itself allocate on some JVMs, which mustn't be blamed on the ticks
+        long first = allocationMXBean.getThreadAllocatedBytes(threadId);
+        long second = allocationMXBean.getThreadAllocatedBytes(threadId);
+        measurementOverheadBytes = second - first;
+    }
+
+    private void runTicks(int tickCount)
+    {
+        GameEngine engine = headlessGame.getEngine();
+
+        for (int i = 0; i < tickCount; i++)
+        {
+            Direction nextDirection = boardCycle.getDirection(engine.getSnake().getHeadCell());
+
+            if (nextDirection != engine.getSnakeDirection())
+            {
+                headlessGame.setSnakeDirection(nextDirection);
+            }
+
+            int scoreBefore = engine.getScore();
+            int replayCapacityBefore = headlessGame.getReplayCapacity();
+            long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+
+            boolean running = headlessGame.tick();
+
+            long allocatedBytes = Math.max(0, allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore - measurementOverheadBytes);
+
+            if (!running)
+            {
+                endTicks++;
+                endBytes += allocatedBytes;
+
+                if (engine.getSnake().getLength() < BoardCycle.CELL_COUNT)
+                {
+                    throw new IllegalStateException("The snake left the cycle and collided at tick " + engine.getTickCount() + ".");
+                }
+
+                headlessGame.start();
+            }
+            else if (headlessGame.getReplayCapacity() != replayCapacityBefore)
+            {
+                growthTicks++;
+                growthBytes += allocatedBytes;
+                growthBudgetBytes += headlessGame.getReplayCapacity() + ARRAY_OVERHEAD_BYTES + (engine.getScore() != scoreBefore ? EAT_ALLOCATION_BUDGET_BYTES : 0);
+            }
+            else if (engine.getScore() != scoreBefore)
+            {
+                eatTicks++;
+                eatBytes += allocatedBytes;
+            }
+            else
+            {
+                moveTicks++;
+                moveBytes += allocatedBytes;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package bench;
+
+/**
+ * A single measured operation. The runner calls setUp() once, then run() as many times as fits in each
+ * iteration, then tearDown(). run() returns a value derived from its work so the JIT can't remove it.
+ */
+public abstract class Benchmark
+{
+    private final String name;
+
+    protected Benchmark(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setUp() throws Exception
+    {
+    }
+
+    public abstract int run() throws Exception;
+
+    public void tearDown() throws Exception
+    {
+    }
+}
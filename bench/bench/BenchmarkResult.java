@@ -0,0 +1,32 @@
+package bench;
+
+/**
+ * The average time per operation of a benchmark over its measurement iterations.
+ */
+public class BenchmarkResult
+{
+    private final String name;
+    private final double meanNanosPerOp, stdDevNanosPerOp;
+
+    public BenchmarkResult(String name, double meanNanosPerOp, double stdDevNanosPerOp)
+    {
+        this.name = name;
+        this.meanNanosPerOp = meanNanosPerOp;
+        this.stdDevNanosPerOp = stdDevNanosPerOp;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public double getMeanNanosPerOp()
+    {
+        return meanNanosPerOp;
+    }
+
+    public double getStdDevNanosPerOp()
+    {
+        return stdDevNanosPerOp;
+    }
+}
@@ -0,0 +1,278 @@
+package bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Scanner;
+
+/**
+ * Runs the benchmarks of the game core and the score store and prints the average time per operation.
+ * Each benchmark is warmed up before being measured, so the timings are for JIT-compiled code.
+ *
+ * Usage: BenchmarkRunner [name filter...] [--csv results.csv] [--baseline baseline.csv] [--threshold percent]
+ *
+ * Results saved with --csv can be passed back as --baseline on a later run to compare against them, in which
+ * case the runner exits with status 1 if any benchmark got slower by more than the threshold (10% by default).
+ */
+public class BenchmarkRunner
+{
+    private static final int WARMUP_ITERATIONS = 5, MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L, MIN_BATCH_NANOS = 1_000_000L;
+    private static final int[] SNAKE_LENGTHS = { 3, 37, 375, 3750 };
+    private static final int[] OCCUPIED_PERCENTAGES = { 0, 50, 99 };
+    private static final int[] LEADERBOARD_SIZES = { 1_000, 1_000_000 };
+    private static final int[] HIGH_SCORE_FILE_SIZES = { 5, 1_000_000 };
+    private static final String CSV_HEADER = "benchmark,mean_ns_per_op,std_dev_ns_per_op";
+
+    private static volatile int sink;
+
+    public static void main(String[] args) throws Exception
+    {
+        ArrayList<String> filters = new ArrayList<String>();
+        String csvPath = null, baselinePath = null;
+        double thresholdPercent = 10;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--csv"))
+            {
+                csvPath = args[++i];
+            }
+            else if (args[i].equals("--baseline"))
+            {
+                baselinePath = args[++i];
+            }
+            else if (args[i].equals("--threshold"))
+            {
+                thresholdPercent = Double.parseDouble(args[++i]);
+            }
+            else
+            {
+                filters.add(args[i]);
+            }
+        }
+
+        ArrayList<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+
+        for (Benchmark benchmark : createBenchmarks())
+        {
+            if (matchesFilters(benchmark.getName(), filters))
+            {
+                BenchmarkResult result = runBenchmark(benchmark);
+                results.add(result);
+
+                System.out.println(String.format("%-50s %14.1f ns/op  +- %.1f", result.getName(), result.getMeanNanosPerOp(), result.getStdDevNanosPerOp()));
+            }
+        }
+
+        if (csvPath != null)
+        {
+            writeCsv(csvPath, results);
+        }
+
+        if (baselinePath != null && !compareWithBaseline(readCsv(baselinePath), results, thresholdPercent))
+        {
+            System.exit(1);
+        }
+    }
+
+    public static ArrayList<Benchmark> createBenchmarks()
+    {
+        ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        for (int length : SNAKE_LENGTHS)
+        {
+            benchmarks.add(new SnakeMoveBenchmark(length));
+        }
+
+        for (int length : SNAKE_LENGTHS)
+        {
+            benchmarks.add(new SnakeCollisionBenchmark(length));
+        }
+
+        for (int occupiedPercent : OCCUPIED_PERCENTAGES)
+        {
+            benchmarks.add(new FoodSpawnBenchmark(occupiedPercent));
+        }
+
+        benchmarks.add(new PaintBenchmark());
+
+        for (HighScoreBenchmark.Operation operation : HighScoreBenchmark.Operation.values())
+        {
+            for (int size : HIGH_SCORE_FILE_SIZES)
+            {
+                benchmarks.add(new HighScoreBenchmark(operation, size));
+            }
+        }
+
+        for (LeaderboardBenchmark.Operation operation : LeaderboardBenchmark.Operation.values())
+        {
+            for (int size : LEADERBOARD_SIZES)
+            {
+                benchmarks.add(new LeaderboardBenchmark(operation, size));
+            }
+        }
+
+        return benchmarks;
+    }
+
+    public static BenchmarkResult runBenchmark(Benchmark benchmark) throws Exception
+    {
+        double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+
+        benchmark.setUp();
+
+        try
+        {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            {
+                runIteration(benchmark);
+            }
+
+            for (int i = 0; i < MEASUREMENT_ITERATIONS; i++)
+            {
+                nanosPerOp[i] = runIteration(benchmark);
+            }
+        }
+        finally
+        {
+            benchmark.tearDown();
+        }
+
+        double mean = 0, variance = 0;
+
+        for (double value : nanosPerOp)
+        {
+            mean += value / nanosPerOp.length;
+        }
+
+        for (double value : nanosPerOp)
+        {
+            variance += (value - mean) * (value - mean) / nanosPerOp.length;
+        }
+
+        return new BenchmarkResult(benchmark.getName(), mean, Math.sqrt(variance));
+    }
+
+    /**
+     * Runs the benchmark for ITERATION_NANOS and returns the average time per operation. Operations are run
+     * in batches that grow until a batch takes long enough for the cost of reading the clock to vanish.
+     */
+    private static double runIteration(Benchmark benchmark) throws Exception
+    {
+        long startTime = System.nanoTime();
+        long currentTime = startTime;
+        long operationCount = 0;
+        int batchSize = 1, result = 0;
+
+        while (currentTime - startTime < ITERATION_NANOS)
+        {
+            long batchStartTime = currentTime;
+
+            for (int i = 0; i < batchSize; i++)
+            {
+                result += benchmark.run();
+            }
+
+            operationCount += batchSize;
+            currentTime = System.nanoTime();
+
+            if (currentTime - batchStartTime < MIN_BATCH_NANOS && batchSize < (1 << 30))
+            {
+                batchSize *= 2;
+            }
+        }
+
+        sink = result;
+
+        return (double)(currentTime - startTime) / operationCount;
+    }
+
+    private static boolean matchesFilters(String name, ArrayList<String> filters)
+    {
+        if (filters.isEmpty())
+        {
+            return true;
+        }
+
+        for (String filter : filters)
+        {
+            if (name.toLowerCase().contains(filter.toLowerCase()))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void writeCsv(String path, ArrayList<BenchmarkResult> results) throws IOException
+    {
+        FileWriter fileWriter = new FileWriter(path);
+
+        fileWriter.write(CSV_HEADER + "\n");
+
+        for (BenchmarkResult result : results)
+        {
+            fileWriter.write(result.getName() + "," + result.getMeanNanosPerOp() + "," + result.getStdDevNanosPerOp() + "\n");
+        }
+
+        fileWriter.close();
+    }
+
+    private static HashMap<String, Double> readCsv(String path) throws IOException
+    {
+        HashMap<String, Double> meanNanosPerOp = new HashMap<String, Double>();
+        Scanner fileReader = new Scanner(new File(path));
+
+        while (fileReader.hasNextLine())
+        {
+            String line = fileReader.nextLine();
+
+            if (line.isEmpty() || line.equals(CSV_HEADER))
+            {
+                continue;
+            }
+
+            String[] lineTokens = line.split(",");
+            meanNanosPerOp.put(lineTokens[0], Double.parseDouble(lineTokens[1]));
+        }
+
+        fileReader.close();
+
+        return meanNanosPerOp;
+    }
+
+    /**
+     * Prints how each result changed against the baseline, returns false if any got slower than allowed.
+     */
+    private static boolean compareWithBaseline(HashMap<String, Double> baseline, ArrayList<BenchmarkResult> results, double thresholdPercent)
+    {
+        boolean withinThreshold = true;
+
+        System.out.println();
+
+        for (BenchmarkResult result : results)
+        {
+            Double baselineMean = baseline.get(result.getName());
+
+            if (baselineMean == null)
+            {
+                System.out.println(String.format("%-50s %14s", result.getName(), "no baseline"));
+
+                continue;
+            }
+
+            double changePercent = (result.getMeanNanosPerOp() - baselineMean) / baselineMean * 100;
+            boolean regressed = changePercent > thresholdPercent;
+
+            System.out.println(String.format("%-50s %+13.1f%%%s", result.getName(), changePercent, regressed ? "  REGRESSION" : ""));
+
+            withinThreshold &= !regressed;
+        }
+
+        return withinThreshold;
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import game.Direction;
+
+/**
+ * A Hamiltonian cycle of the default 75 x 50 board: rows are walked back and forth over columns 1 and up,
+ * and column 0 leads back to the start. A snake following it never collides, whatever its length.
+ */
+public class BoardCycle
+{
+    public static final int CELL_SIZE = 10, MAP_WIDTH = 750, MAP_HEIGHT = 500;
+    public static final int COLUMNS = MAP_WIDTH / CELL_SIZE, ROWS = MAP_HEIGHT / CELL_SIZE, CELL_COUNT = COLUMNS * ROWS;
+
+    private final int[] cycleCells = new int[CELL_COUNT];
+    private final Direction[] cellDirections = new Direction[CELL_COUNT];
+
+    /**
+     * When reversed, the cycle runs from left to right along row 1, which is how GameEngine places its snake.
+     */
+    public BoardCycle(boolean reversed)
+    {
+        int index = 0;
+
+        for (int y = 0; y < ROWS; y++)
+        {
+            for (int i = 0; i < COLUMNS - 1; i++)
+            {
+                int x = y % 2 == 0 ? 1 + i : COLUMNS - 1 - i;
+
+                cycleCells[index++] = y * COLUMNS + x;
+            }
+        }
+
+        for (int y = ROWS - 1; y >= 0; y--)
+        {
+            cycleCells[index++] = y * COLUMNS;
+        }
+
+        for (int i = 0; i < CELL_COUNT; i++)
+        {
+            int from = cycleCells[i], to = cycleCells[(i + 1) % CELL_COUNT];
+
+            if (reversed)
+            {
+                from = cycleCells[(i + 1) % CELL_COUNT];
+                to = cycleCells[i];
+            }
+
+            int dx = to % COLUMNS - from % COLUMNS, dy = to / COLUMNS - from / COLUMNS;
+
+            cellDirections[from] = dx > 0 ? Direction.Right : dx < 0 ? Direction.Left : dy > 0 ? Direction.Down : Direction.Up;
+        }
+
+        if (reversed)
+        {
+            for (int i = 0; i < CELL_COUNT / 2; i++)
+            {
+                int cell = cycleCells[i];
+
+                cycleCells[i] = cycleCells[CELL_COUNT - 1 - i];
+                cycleCells[CELL_COUNT - 1 - i] = cell;
+            }
+        }
+    }
+
+    /**
+     * Returns the cell at the given position along the cycle.
+     */
+    public int getCell(int index)
+    {
+        return cycleCells[index % CELL_COUNT];
+    }
+
+    /**
+     * Returns the direction leading from the given cell to the next one on the cycle.
+     */
+    public Direction getDirection(int cell)
+    {
+        return cellDirections[cell];
+    }
+}
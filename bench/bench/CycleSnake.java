@@ -0,0 +1,45 @@
+package bench;
+
+import game.Snake;
+
+import java.awt.*;
+
+/**
+ * Builds snakes of any length lying on a BoardCycle, so they can move forever without colliding,
+ * even when they fill the whole board.
+ */
+public class CycleSnake
+{
+    private final BoardCycle boardCycle = new BoardCycle(false);
+    private final Snake snake;
+
+    public CycleSnake(int length)
+    {
+        if (length < 1 || length > BoardCycle.CELL_COUNT)
+        {
+            throw new IllegalArgumentException("The length must be between 1 and " + BoardCycle.CELL_COUNT + ".");
+        }
+
+        int headCell = boardCycle.getCell(length - 1);
+
+        snake = new Snake(new Point(headCell % BoardCycle.COLUMNS, headCell / BoardCycle.COLUMNS), true, BoardCycle.CELL_SIZE, BoardCycle.MAP_HEIGHT, BoardCycle.MAP_WIDTH);
+
+        for (int i = length - 2; i >= 0; i--)
+        {
+            snake.addBodyPart(boardCycle.getCell(i));
+        }
+    }
+
+    public Snake getSnake()
+    {
+        return snake;
+    }
+
+    /**
+     * Moves the snake one cell along the cycle.
+     */
+    public void advance()
+    {
+        snake.move(boardCycle.getDirection(snake.getHeadCell()));
+    }
+}
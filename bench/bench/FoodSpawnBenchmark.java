@@ -0,0 +1,43 @@
+package bench;
+
+import game.OccupancyGrid;
+
+import java.util.Random;
+
+/**
+ * Picks a random free cell the way GameEngine places food, on a board filled to the given percentage.
+ */
+public class FoodSpawnBenchmark extends Benchmark
+{
+    private final int occupiedPercent;
+    private final Random random = new Random(42);
+    private OccupancyGrid occupancyGrid;
+
+    public FoodSpawnBenchmark(int occupiedPercent)
+    {
+        super("GameEngine.generateFood[occupied=" + occupiedPercent + "%]");
+
+        this.occupiedPercent = occupiedPercent;
+    }
+
+    @Override
+    public void setUp()
+    {
+        occupancyGrid = new OccupancyGrid(BoardCycle.CELL_COUNT);
+
+        int occupiedCount = BoardCycle.CELL_COUNT * occupiedPercent / 100;
+
+        while (occupancyGrid.getCellCount() - occupancyGrid.getFreeCellCount() < occupiedCount)
+        {
+            occupancyGrid.occupy(occupancyGrid.getFreeCell(random.nextInt(occupancyGrid.getFreeCellCount())));
+        }
+    }
+
+    @Override
+    public int run()
+    {
+        int randIndex = random.nextInt(occupancyGrid.getFreeCellCount());
+
+        return occupancyGrid.getFreeCell(randIndex);
+    }
+}
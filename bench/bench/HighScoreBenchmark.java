@@ -0,0 +1,100 @@
+package bench;
+
+import score.HighScoreLog;
+import score.HighScoreManager;
+import score.HighScoreSnapshot;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Loading, saving and ranking high scores, using a temporary file so the real high scores are left alone.
+ * Saving adds a score first, so it measures one append to the high score log plus its fsync. Saving
+ * asynchronously measures what the caller pays when the write is left to the persistence thread. The file starts
+ * out with the given number of entries, loading it maps the snapshot and reads the top of the board. Reading the
+ * top adds a score below the board first, which leaves the cached top of the board in place.
+ */
+public class HighScoreBenchmark extends Benchmark
+{
+    public enum Operation
+    {
+        Load,
+        Save,
+        SaveAsync,
+        Top,
+        Rank
+    }
+
+    private final Operation operation;
+    private final int entryCount;
+    private File highScoreFile;
+    private HighScoreManager highScoreMngr;
+    private int nextScore;
+
+    public HighScoreBenchmark(Operation operation, int entryCount)
+    {
+        super("HighScoreManager." + operation.toString().toLowerCase() + "[entries=" + entryCount + "]");
+
+        this.operation = operation;
+        this.entryCount = entryCount;
+    }
+
+    @Override
+    public void setUp() throws Exception
+    {
+        highScoreFile = File.createTempFile("highscores", ".dat");
+        highScoreMngr = new HighScoreManager(highScoreFile.getPath());
+
+        for (int i = 1; i <= entryCount; i++)
+        {
+            highScoreMngr.addHighScore("Player " + i, (entryCount - i + 1) * 150 % 2000);
+        }
+
+        highScoreMngr.saveHighScores();
+    }
+
+    @Override
+    public int run() throws Exception
+    {
+        switch (operation)
+        {
+            case Load:
+                highScoreMngr.loadHighScores();
+
+                return highScoreMngr.getHighScoresLeaderboard()[0].score;
+            case Save:
+                nextScore = (nextScore + 15) % 1000;
+                highScoreMngr.addHighScore("Player", nextScore);
+                highScoreMngr.saveHighScores();
+
+                return 0;
+            case SaveAsync:
+                nextScore = (nextScore + 15) % 1000;
+                highScoreMngr.addHighScore("Player", nextScore);
+
+                return highScoreMngr.saveHighScoresAsync().isDone() ? 1 : 0;
+            case Top:
+                highScoreMngr.addHighScore("Player", 0);
+
+                return highScoreMngr.getHighScoresLeaderboard()[0].score;
+            default:
+                nextScore = (nextScore + 15) % 1000;
+
+                return highScoreMngr.getHighScoreRank(nextScore);
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        highScoreMngr.close();
+        HighScoreLog.deleteUpTo(highScoreFile.toPath(), Long.MAX_VALUE);
+
+        for (long generation : HighScoreSnapshot.findGenerations(highScoreFile.toPath()))
+        {
+            Files.deleteIfExists(HighScoreSnapshot.getPath(highScoreFile.toPath(), generation));
+        }
+
+        highScoreFile.delete();
+    }
+}
@@ -0,0 +1,73 @@
+package bench;
+
+import score.HighScore;
+import score.Leaderboard;
+
+import java.util.Random;
+
+/**
+ * Adding, ranking and paging through a leaderboard that already holds the given number of scores. Adding only
+ * depends on the highest score, not on how many scores are kept, so the add benchmark starts over after every
+ * MAX_ADDED_ENTRIES to keep the memory it takes bounded.
+ */
+public class LeaderboardBenchmark extends Benchmark
+{
+    public enum Operation
+    {
+        Add,
+        Rank,
+        Top,
+        Page
+    }
+
+    private final int MAX_SCORE = 2000;
+    private final int PAGE_SIZE = 20;
+    private final int MAX_ADDED_ENTRIES = 1_000_000;
+
+    private final Operation operation;
+    private final int entryCount;
+    private final Random random = new Random(42);
+    private Leaderboard leaderboard;
+
+    public LeaderboardBenchmark(Operation operation, int entryCount)
+    {
+        super("Leaderboard." + operation.toString().toLowerCase() + "[entries=" + entryCount + "]");
+
+        this.operation = operation;
+        this.entryCount = entryCount;
+    }
+
+    @Override
+    public void setUp()
+    {
+        leaderboard = new Leaderboard();
+
+        for (int i = 0; i < entryCount; i++)
+        {
+            leaderboard.add("Player " + (i % 1000), random.nextInt(MAX_SCORE + 1));
+        }
+    }
+
+    @Override
+    public int run()
+    {
+        switch (operation)
+        {
+            case Add:
+                if (leaderboard.size() >= entryCount + MAX_ADDED_ENTRIES)
+                {
+                    leaderboard.clear();
+                }
+
+                return leaderboard.add("Player", random.nextInt(MAX_SCORE + 1));
+            case Rank:
+                return leaderboard.getRank(random.nextInt(MAX_SCORE + 1));
+            case Top:
+                return leaderboard.getTop(5)[0].score;
+            default:
+                HighScore[] page = leaderboard.getPage(1 + random.nextInt(leaderboard.size() - PAGE_SIZE), PAGE_SIZE);
+
+                return page[PAGE_SIZE - 1].score;
+        }
+    }
+}
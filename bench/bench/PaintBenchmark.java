@@ -0,0 +1,46 @@
+package bench;
+
+import game.SnakeGameContainer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A full repaint of the game container into an offscreen image, the way Swing paints it after an expose.
+ */
+public class PaintBenchmark extends Benchmark
+{
+    private SnakeGameContainer snakeGame;
+    private BufferedImage image;
+    private Graphics2D imageGraphics;
+
+    public PaintBenchmark()
+    {
+        super("SnakeGameContainer.paintComponent");
+    }
+
+    @Override
+    public void setUp()
+    {
+        snakeGame = new SnakeGameContainer();
+        snakeGame.setSize(snakeGame.getPreferredSize());
+
+        image = new BufferedImage(snakeGame.getWidth(), snakeGame.getHeight(), BufferedImage.TYPE_INT_RGB);
+        imageGraphics = image.createGraphics();
+    }
+
+    @Override
+    public int run()
+    {
+        snakeGame.paint(imageGraphics);
+
+        return image.getRGB(0, 0);
+    }
+
+    @Override
+    public void tearDown()
+    {
+        imageGraphics.dispose();
+        snakeGame.shutdown();
+    }
+}
@@ -0,0 +1,234 @@
+package bench;
+
+import game.GameLoop;
+import game.GameLoopHandler;
+import game.SnakeGameContainer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that a paused game sits idle: starts a game in a SnakeGameContainer, pauses it, and over PAUSE_MILLIS
+ * measures the CPU time of the game and render loop threads and counts the repaints the container asks for.
+ * Then drives a bare GameLoop to check that a paused loop calls its handler no more and that unpausing wakes it
+ * within MAX_RESUME_LATENCY_NANOS. Exits with status 1 if a paused game uses more than MAX_PAUSED_CPU_NANOS, asks
+ * for any repaint or resumes too slowly.
+ */
+public class PauseCheck
+{
+    private static final long SETTLE_MILLIS = 200, PAUSE_MILLIS = 2000, RUN_MILLIS = 500;
+    private static final long MAX_PAUSED_CPU_NANOS = 20_000_000L; // 1% of a core over the pause
+    private static final long MAX_RESUME_LATENCY_NANOS = 1_000_000L;
+    private static final int RESUME_SAMPLES = 10;
+    private static final String[] LOOP_THREAD_NAMES = { "Snake Game Loop", "Snake Render Loop" };
+
+    private static final AtomicLong repaintCount = new AtomicLong();
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (!threadMXBean.isThreadCpuTimeSupported())
+        {
+            System.out.println("This JVM can't measure thread CPU time.");
+            System.exit(2);
+        }
+
+        threadMXBean.setThreadCpuTimeEnabled(true);
+
+        boolean failed = false;
+
+        failed |= !checkPausedContainer(threadMXBean);
+        failed |= !checkPausedLoop(threadMXBean);
+
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Pauses a running game and returns false if its loops kept using CPU or it kept asking to be repainted.
+     */
+    private static boolean checkPausedContainer(ThreadMXBean threadMXBean) throws InterruptedException
+    {
+        SnakeGameContainer snakeGame = new SnakeGameContainer()
+        {
+            @Override
+            public void repaint(long tm, int x, int y, int width, int height)
+            {
+                repaintCount.incrementAndGet();
+                super.repaint(tm, x, y, width, height);
+            }
+        };
+
+        snakeGame.startGame();
+        Thread.sleep(RUN_MILLIS);
+
+        long runningRepaints = repaintCount.get();
+
+        snakeGame.setPauseState(true);
+        Thread.sleep(SETTLE_MILLIS);
+
+        long[] loopThreadIds = findThreadIds(LOOP_THREAD_NAMES);
+        long cpuBefore = getCpuTime(threadMXBean, loopThreadIds);
+        long repaintsBefore = repaintCount.get();
+
+        Thread.sleep(PAUSE_MILLIS);
+
+        long pausedCpuNanos = getCpuTime(threadMXBean, loopThreadIds) - cpuBefore;
+        long pausedRepaints = repaintCount.get() - repaintsBefore;
+
+        snakeGame.shutdown();
+
+        System.out.println(String.format("Running for %d ms asked for %d repaints", RUN_MILLIS, runningRepaints));
+        System.out.println(String.format("Paused for %d ms: the loop threads used %.3f ms of CPU (budget %.3f ms) and asked for %d repaints",
+            PAUSE_MILLIS, pausedCpuNanos / 1e6, MAX_PAUSED_CPU_NANOS / 1e6, pausedRepaints));
+
+        boolean passed = true;
+
+        if (pausedCpuNanos > MAX_PAUSED_CPU_NANOS)
+        {
+            System.out.println("FAILED: the loops keep running while the game is paused.");
+            passed = false;
+        }
+
+        if (pausedRepaints > 0)
+        {
+            System.out.println("FAILED: the game keeps asking to be repainted while it is paused.");
+            passed = false;
+        }
+
+        return passed;
+    }
+
+    /**
+     * Pauses and unpauses a bare game loop and returns false if its handler was called while paused, its thread
+     * used CPU while paused or it took too long to pick up again.
+     */
+    private static boolean checkPausedLoop(ThreadMXBean threadMXBean) throws InterruptedException
+    {
+        AtomicLong handlerCalls = new AtomicLong(), lastFrameTime = new AtomicLong();
+
+        GameLoop gameLoop = new GameLoop("Pause Check Loop");
+        gameLoop.setTickRate(1000.0 / 75);
+        gameLoop.start(new GameLoopHandler()
+        {
+            @Override
+            public boolean onTick()
+            {
+                handlerCalls.incrementAndGet();
+
+                return true;
+            }
+
+            @Override
+            public void onFrame()
+            {
+                handlerCalls.incrementAndGet();
+                lastFrameTime.set(System.nanoTime());
+            }
+        });
+
+        Thread.sleep(RUN_MILLIS);
+
+        long loopThreadId = findThreadIds("Pause Check Loop")[0];
+
+        gameLoop.setPaused(true);
+        Thread.sleep(SETTLE_MILLIS);
+
+        long cpuBefore = threadMXBean.getThreadCpuTime(loopThreadId);
+        long callsBefore = handlerCalls.get();
+
+        Thread.sleep(PAUSE_MILLIS);
+
+        long pausedCpuNanos = threadMXBean.getThreadCpuTime(loopThreadId) - cpuBefore;
+        long pausedCalls = handlerCalls.get() - callsBefore;
+
+        // Unpausing runs a frame straight away, so the time until it shows how quickly the loop wakes up
+        long[] resumeLatencies = new long[RESUME_SAMPLES];
+
+        for (int i = 0; i < RESUME_SAMPLES; i++)
+        {
+            // Long enough for the loop to finish its current park and block on the pause
+            gameLoop.setPaused(true);
+            Thread.sleep(SETTLE_MILLIS);
+
+            long resumeTime = System.nanoTime();
+            gameLoop.setPaused(false);
+
+            // Yields rather than spins, on a single core spinning would keep the loop thread from waking up
+            while (lastFrameTime.get() < resumeTime)
+            {
+                Thread.yield();
+            }
+
+            resumeLatencies[i] = lastFrameTime.get() - resumeTime;
+        }
+
+        gameLoop.shutdown();
+
+        Arrays.sort(resumeLatencies);
+        long medianResumeLatency = resumeLatencies[RESUME_SAMPLES / 2];
+
+        System.out.println(String.format("Paused loop for %d ms: its thread used %.3f ms of CPU and its handler was called %d times",
+            PAUSE_MILLIS, pausedCpuNanos / 1e6, pausedCalls));
+        System.out.println(String.format("Resuming took %.3f ms at the median, %.3f ms at most (budget %.3f ms)",
+            medianResumeLatency / 1e6, resumeLatencies[RESUME_SAMPLES - 1] / 1e6, MAX_RESUME_LATENCY_NANOS / 1e6));
+
+        boolean passed = true;
+
+        if (pausedCpuNanos > MAX_PAUSED_CPU_NANOS || pausedCalls > 0)
+        {
+            System.out.println("FAILED: the game loop keeps running while it is paused.");
+            passed = false;
+        }
+
+        // The median, as a single wakeup may be delayed by the scheduler however well the loop behaves
+        if (medianResumeLatency > MAX_RESUME_LATENCY_NANOS)
+        {
+            System.out.println("FAILED: the game loop is slow to pick up again after a pause.");
+            passed = false;
+        }
+
+        return passed;
+    }
+
+    private static long[] findThreadIds(String... threadNames)
+    {
+        long[] threadIds = new long[threadNames.length];
+
+        for (int i = 0; i < threadNames.length; i++)
+        {
+            threadIds[i] = -1;
+
+            for (Thread thread : Thread.getAllStackTraces().keySet())
+            {
+                if (thread.getName().equals(threadNames[i]))
+                {
+                    threadIds[i] = thread.getId();
+                }
+            }
+
+            if (threadIds[i] == -1)
+            {
+                throw new IllegalStateException("There is no thread named " + threadNames[i] + ".");
+            }
+        }
+
+        return threadIds;
+    }
+
+    private static long getCpuTime(ThreadMXBean threadMXBean, long[] threadIds)
+    {
+        long cpuNanos = 0;
+
+        for (long threadId : threadIds)
+        {
+            cpuNanos += threadMXBean.getThreadCpuTime(threadId);
+        }
+
+        return cpuNanos;
+    }
+}
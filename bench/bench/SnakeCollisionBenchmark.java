@@ -0,0 +1,44 @@
+package bench;
+
+import game.Snake;
+
+import java.util.Random;
+
+/**
+ * Snake.willCollideWithBody() for cells spread randomly over the board.
+ */
+public class SnakeCollisionBenchmark extends Benchmark
+{
+    private final int QUERY_COUNT = 1024; // Must be a power of two
+
+    private final int length;
+    private final int[] queryCells = new int[QUERY_COUNT];
+    private Snake snake;
+    private int queryIndex;
+
+    public SnakeCollisionBenchmark(int length)
+    {
+        super("Snake.willCollideWithBody[length=" + length + "]");
+
+        this.length = length;
+    }
+
+    @Override
+    public void setUp()
+    {
+        snake = new CycleSnake(length).getSnake();
+
+        Random random = new Random(42);
+
+        for (int i = 0; i < QUERY_COUNT; i++)
+        {
+            queryCells[i] = random.nextInt(BoardCycle.CELL_COUNT);
+        }
+    }
+
+    @Override
+    public int run()
+    {
+        return snake.willCollideWithBody(queryCells[queryIndex++ & (QUERY_COUNT - 1)]) ? 1 : 0;
+    }
+}
@@ -0,0 +1,31 @@
+package bench;
+
+/**
+ * Snake.move() on a snake that keeps moving along a cycle covering the whole board.
+ */
+public class SnakeMoveBenchmark extends Benchmark
+{
+    private final int length;
+    private CycleSnake cycleSnake;
+
+    public SnakeMoveBenchmark(int length)
+    {
+        super("Snake.move[length=" + length + "]");
+
+        this.length = length;
+    }
+
+    @Override
+    public void setUp()
+    {
+        cycleSnake = new CycleSnake(length);
+    }
+
+    @Override
+    public int run()
+    {
+        cycleSnake.advance();
+
+        return cycleSnake.getSnake().getHeadCell();
+    }
+}
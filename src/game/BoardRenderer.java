@@ -0,0 +1,396 @@
+package game;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Keeps a persistent image of the board and brings it up to date from render snapshots. When a snapshot
+ * directly follows the previously drawn one, only the cells that changed are redrawn (the new and old head,
+ * the new and vacated tail cell and the food), so the cost of a frame doesn't depend on the length of the
+ * snake. The changed cells are reported so that only their rectangles have to be copied to the screen.
+ * Cells are drawn by copying pre-rendered tiles of the current theme from a TileAtlas.
+ *
+ * With interpolation enabled the board image is kept one snapshot behind the latest one, and the move to
+ * the latest snapshot is drawn on top of it with drawInterpolatedMove(): the head slides into its new cell
+ * while the tail slides out of its old one.
+ */
+public class BoardRenderer
+{
+    private final int cellSize, width, height;
+    private final int[] dirtyCells = new int[16];
+    private final Rectangle dirtyCellBounds = new Rectangle();
+
+    private Theme theme;
+    private TileAtlas tileAtlas;
+    private BufferedImage boardImage;
+    private boolean interpolation = false;
+    private long lastSequence = -1, lastTick = -1;
+    private int lastHeadCell, lastTailCell, lastFoodCell, columns;
+    private Direction lastTailDirection;
+    private boolean hasPendingMove = false;
+    private long pendingSequence, pendingTick, pendingPublishTimeNanos;
+    private int pendingHeadCell, pendingTailCell, pendingFoodCell;
+    private Direction pendingHeadDirection, pendingTailDirection;
+    private int dirtyCellCount;
+    private boolean fullyRedrawn;
+
+    public BoardRenderer(int cellSize, int width, int height, Theme theme)
+    {
+        this.cellSize = cellSize;
+        this.width = width;
+        this.height = height;
+        this.theme = theme;
+    }
+
+    public BufferedImage getBoardImage()
+    {
+        return boardImage;
+    }
+
+    public Theme getTheme()
+    {
+        return theme;
+    }
+
+    /**
+     * The tiles of the new theme are rendered and the whole board is redrawn on the next update.
+     */
+    public void setTheme(Theme theme)
+    {
+        this.theme = theme;
+        this.tileAtlas = null;
+    }
+
+    public boolean isInterpolation()
+    {
+        return interpolation;
+    }
+
+    /**
+     * Turning interpolation off applies the pending move to the board image straight away.
+     */
+    public void setInterpolation(boolean interpolation)
+    {
+        if (!interpolation && hasPendingMove && boardImage != null)
+        {
+            Graphics2D g2d = boardImage.createGraphics();
+            applyPendingMove(g2d);
+            g2d.dispose();
+        }
+
+        this.interpolation = interpolation;
+    }
+
+    /**
+     * Returns true if there is a move between the board image and the latest snapshot left to interpolate.
+     */
+    public boolean hasPendingMove()
+    {
+        return hasPendingMove;
+    }
+
+    public long getPendingPublishTimeNanos()
+    {
+        return pendingPublishTimeNanos;
+    }
+
+    /**
+     * Returns true if the last update redrew the whole board rather than only the dirty cells.
+     */
+    public boolean wasFullyRedrawn()
+    {
+        return fullyRedrawn;
+    }
+
+    public int getDirtyCellCount()
+    {
+        return dirtyCellCount;
+    }
+
+    /**
+     * Returns the pixel bounds of one of the dirty cells, the rectangle is reused between calls.
+     */
+    public Rectangle getDirtyCellBounds(int index)
+    {
+        int cell = dirtyCells[index];
+
+        dirtyCellBounds.setBounds(cell % columns * cellSize, cell / columns * cellSize, cellSize, cellSize);
+
+        return dirtyCellBounds;
+    }
+
+    /**
+     * Brings the board image up to date with the given snapshot, returns false if nothing had to be drawn.
+     * The cells changed by the update are reported as dirty cells.
+     */
+    public boolean update(RenderSnapshot snapshot, GraphicsConfiguration graphicsConfig)
+    {
+        dirtyCellCount = 0;
+        fullyRedrawn = false;
+
+        long newestSequence = hasPendingMove ? pendingSequence : lastSequence;
+
+        if (snapshot.getSequence() == newestSequence && boardImage != null && tileAtlas != null)
+        {
+            return false;
+        }
+
+        boolean followsNewestSnapshot = snapshot.getSequence() == newestSequence + 1
+            && snapshot.getTick() == (hasPendingMove ? pendingTick : lastTick) + 1;
+
+        if (boardImage == null)
+        {
+            boardImage = graphicsConfig != null
+                ? graphicsConfig.createCompatibleImage(width, height)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+            followsNewestSnapshot = false;
+        }
+
+        if (tileAtlas == null)
+        {
+            tileAtlas = new TileAtlas(theme, cellSize, graphicsConfig);
+            followsNewestSnapshot = false;
+        }
+
+        columns = snapshot.getColumns();
+
+        Graphics2D g2d = boardImage.createGraphics();
+
+        if (!followsNewestSnapshot)
+        {
+            drawWholeBoard(g2d, snapshot);
+        }
+        else
+        {
+            applyPendingMove(g2d);
+
+            hasPendingMove = true;
+            pendingSequence = snapshot.getSequence();
+            pendingTick = snapshot.getTick();
+            pendingPublishTimeNanos = snapshot.getPublishTimeNanos();
+            pendingHeadCell = snapshot.getBodyPartCell(0);
+            pendingTailCell = snapshot.getBodyPartCell(snapshot.getLength() - 1);
+            pendingFoodCell = snapshot.getFoodCell();
+            pendingHeadDirection = getHeadDirection(snapshot);
+            pendingTailDirection = getTailDirection(snapshot);
+
+            if (!interpolation)
+            {
+                applyPendingMove(g2d);
+            }
+        }
+
+        g2d.dispose();
+
+        return true;
+    }
+
+    /**
+     * Marks the cells drawn by drawInterpolatedMove() as dirty, on top of the ones from the last update.
+     */
+    public void markInterpolatedCellsDirty()
+    {
+        if (!hasPendingMove)
+        {
+            return;
+        }
+
+        markDirty(lastHeadCell);
+        markDirty(pendingHeadCell);
+        markDirty(lastTailCell);
+        markDirty(pendingTailCell);
+        markDirty(pendingFoodCell);
+    }
+
+    /**
+     * Draws the pending move over a copy of the board image, progress goes from 0 (the board image as it is)
+     * to 1 (the latest snapshot).
+     */
+    public void drawInterpolatedMove(Graphics2D g2d, double progress)
+    {
+        if (!hasPendingMove || pendingHeadCell == lastHeadCell)
+        {
+            return;
+        }
+
+        int slideLength = (int)Math.round(Math.max(0, Math.min(1, progress)) * cellSize);
+
+        drawTile(g2d, TileAtlas.BODY_TILE, lastHeadCell);
+        drawTile(g2d, TileAtlas.BACKGROUND_TILE, pendingHeadCell);
+
+        if (lastTailCell != pendingTailCell)
+        {
+            drawTile(g2d, TileAtlas.BACKGROUND_TILE, lastTailCell);
+        }
+
+        if (pendingFoodCell != lastFoodCell)
+        {
+            drawTile(g2d, TileAtlas.FOOD_TILE, pendingFoodCell);
+        }
+
+        if (lastTailCell != pendingTailCell)
+        {
+            drawSlidingTile(g2d, TileAtlas.getTailTile(lastTailDirection), lastTailCell, pendingTailCell, lastTailDirection, slideLength);
+        }
+
+        drawSlidingTile(g2d, TileAtlas.getHeadTile(pendingHeadDirection), lastHeadCell, pendingHeadCell, pendingHeadDirection, slideLength);
+    }
+
+    private void drawWholeBoard(Graphics2D g2d, RenderSnapshot snapshot)
+    {
+        g2d.setColor(theme.getBgColour());
+        g2d.fillRect(0, 0, width, height);
+
+        drawTile(g2d, TileAtlas.FOOD_TILE, snapshot.getFoodCell());
+
+        for (int i = 1; i < snapshot.getLength() - 1; i++)
+        {
+            drawTile(g2d, TileAtlas.BODY_TILE, snapshot.getBodyPartCell(i));
+        }
+
+        lastTailDirection = getTailDirection(snapshot);
+
+        drawTile(g2d, TileAtlas.getTailTile(lastTailDirection), snapshot.getBodyPartCell(snapshot.getLength() - 1));
+        drawTile(g2d, TileAtlas.getHeadTile(getHeadDirection(snapshot)), snapshot.getBodyPartCell(0));
+
+        hasPendingMove = false;
+        lastSequence = snapshot.getSequence();
+        lastTick = snapshot.getTick();
+        lastHeadCell = snapshot.getBodyPartCell(0);
+        lastTailCell = snapshot.getBodyPartCell(snapshot.getLength() - 1);
+        lastFoodCell = snapshot.getFoodCell();
+        fullyRedrawn = true;
+    }
+
+    /**
+     * Draws the cells changed by the pending move into the board image, which then matches the pending snapshot.
+     * The old head turns into a body part and the tail tile moves onto the new last body part.
+     */
+    private void applyPendingMove(Graphics2D g2d)
+    {
+        if (!hasPendingMove)
+        {
+            return;
+        }
+
+        if (pendingHeadCell != lastHeadCell)
+        {
+            drawTile(g2d, TileAtlas.BODY_TILE, lastHeadCell);
+            markDirty(lastHeadCell);
+
+            if (lastTailCell != pendingTailCell)
+            {
+                drawTile(g2d, TileAtlas.BACKGROUND_TILE, lastTailCell);
+                markDirty(lastTailCell);
+            }
+
+            drawTile(g2d, TileAtlas.getTailTile(pendingTailDirection), pendingTailCell);
+            markDirty(pendingTailCell);
+        }
+
+        if (pendingFoodCell != lastFoodCell)
+        {
+            drawTile(g2d, TileAtlas.FOOD_TILE, pendingFoodCell);
+            markDirty(pendingFoodCell);
+        }
+
+        if (pendingHeadCell != lastHeadCell)
+        {
+            drawTile(g2d, TileAtlas.getHeadTile(pendingHeadDirection), pendingHeadCell);
+            markDirty(pendingHeadCell);
+        }
+
+        hasPendingMove = false;
+        lastSequence = pendingSequence;
+        lastTick = pendingTick;
+        lastHeadCell = pendingHeadCell;
+        lastTailCell = pendingTailCell;
+        lastTailDirection = pendingTailDirection;
+        lastFoodCell = pendingFoodCell;
+    }
+
+    /**
+     * The head faces the way it last moved, which stays the same when a collision stopped it from moving.
+     */
+    private Direction getHeadDirection(RenderSnapshot snapshot)
+    {
+        if (snapshot.getLength() < 2)
+        {
+            return snapshot.getSnakeDirection();
+        }
+
+        return getDirectionBetween(snapshot.getBodyPartCell(1), snapshot.getBodyPartCell(0));
+    }
+
+    /**
+     * The tail moves towards the body part in front of it.
+     */
+    private Direction getTailDirection(RenderSnapshot snapshot)
+    {
+        if (snapshot.getLength() < 2)
+        {
+            return snapshot.getSnakeDirection();
+        }
+
+        return getDirectionBetween(snapshot.getBodyPartCell(snapshot.getLength() - 1), snapshot.getBodyPartCell(snapshot.getLength() - 2));
+    }
+
+    private void drawTile(Graphics2D g2d, int tile, int cell)
+    {
+        tileAtlas.drawTile(g2d, tile, cell % columns * cellSize, cell / columns * cellSize);
+    }
+
+    /**
+     * Draws a tile slideLength pixels of the way from one cell to the neighbouring one. When the move wraps
+     * around the edge of the board the tile is drawn at both edges, each copy sliding out or in of view.
+     */
+    private void drawSlidingTile(Graphics2D g2d, int tile, int fromCell, int toCell, Direction dir, int slideLength)
+    {
+        int stepX = dir == Direction.Right ? 1 : dir == Direction.Left ? -1 : 0;
+        int stepY = dir == Direction.Down ? 1 : dir == Direction.Up ? -1 : 0;
+
+        int fromX = fromCell % columns * cellSize + stepX * slideLength;
+        int fromY = fromCell / columns * cellSize + stepY * slideLength;
+        int toX = toCell % columns * cellSize - stepX * (cellSize - slideLength);
+        int toY = toCell / columns * cellSize - stepY * (cellSize - slideLength);
+
+        tileAtlas.drawTile(g2d, tile, fromX, fromY);
+
+        if (toX != fromX || toY != fromY)
+        {
+            tileAtlas.drawTile(g2d, tile, toX, toY);
+        }
+    }
+    /**
+     * Returns the direction leading from one cell to a neighbouring one, taking wall teleportation into account.
+     */
+    private Direction getDirectionBetween(int fromCell, int toCell)
+    {
+        int dx = toCell % columns - fromCell % columns;
+        int dy = toCell / columns - fromCell / columns;
+
+        if (dx == 1 || dx < -1)
+        {
+            return Direction.Right;
+        }
+        else if (dx == -1 || dx > 1)
+        {
+            return Direction.Left;
+        }
+        else if (dy == 1 || dy < -1)
+        {
+            return Direction.Down;
+        }
+
+        return Direction.Up;
+    }
+
+    private void markDirty(int cell)
+    {
+        if (dirtyCellCount < dirtyCells.length)
+        {
+            dirtyCells[dirtyCellCount++] = cell;
+        }
+    }
+}
@@ -4,5 +4,20 @@ public enum Direction {
     Down,
     Left,
     Right,
-    Up
+    Up;
+
+    public Direction getOpposite()
+    {
+        switch (this)
+        {
+            case Down:
+                return Up;
+            case Left:
+                return Right;
+            case Right:
+                return Left;
+            default:
+                return Down;
+        }
+    }
 }
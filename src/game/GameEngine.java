@@ -0,0 +1,223 @@
+package game;
+
+import metrics.CollisionEvent;
+import metrics.FlightRecording;
+import metrics.FoodSpawnEvent;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Holds the state of a game and applies the game rules one step at a time. It has no dependency on
+ * Swing or on the wall clock, so it can be driven by the game window or run headless as fast as needed.
+ * Food is placed using a random generator seeded at every reset, so a game is fully determined by its
+ * seed and the direction of the snake on each tick, see ReplayRecorder.
+ */
+public class GameEngine
+{
+    private final Direction INITIAL_SNAKE_DIR = Direction.Right;
+    private final int FOOD_POINTS_WORTH = 15;
+    private final int SNAKE_START_X = 3, SNAKE_START_Y = 1;
+    private static final Random SEED_SOURCE = new Random();
+
+    private final boolean wallCollision;
+    private final int cellSize, mapHeight, mapWidth;
+    private final Random random = new Random();
+
+    private Snake snake;
+    private Direction snakeDirection;
+    private GameState state;
+    private CollisionType lastCollision;
+    private int foodCell, score;
+    private long tickCount, seed;
+
+    public GameEngine(boolean wallCollision, int cellSize, int mapHeight, int mapWidth)
+    {
+        this.wallCollision = wallCollision;
+        this.cellSize = cellSize;
+        this.mapHeight = mapHeight;
+        this.mapWidth = mapWidth;
+
+        reset();
+    }
+
+    public boolean hasWallCollision()
+    {
+        return wallCollision;
+    }
+
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    public int getMapHeight()
+    {
+        return mapHeight;
+    }
+
+    public int getMapWidth()
+    {
+        return mapWidth;
+    }
+
+    public Snake getSnake()
+    {
+        return snake;
+    }
+
+    public Direction getSnakeDirection()
+    {
+        return snakeDirection;
+    }
+
+    public GameState getState()
+    {
+        return state;
+    }
+
+    public CollisionType getLastCollision()
+    {
+        return lastCollision;
+    }
+
+    public int getFoodCell()
+    {
+        return foodCell;
+    }
+
+    public int getScore()
+    {
+        return score;
+    }
+
+    public long getTickCount()
+    {
+        return tickCount;
+    }
+
+    /**
+     * Returns the seed that food placement has been using since the last reset.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Starts a new game with a randomly chosen seed.
+     */
+    public void reset()
+    {
+        reset(SEED_SOURCE.nextLong());
+    }
+
+    /**
+     * Puts a new snake with a length of three on the map and places the first food, two games reset with
+     * the same seed and given the same directions play out the same.
+     */
+    public void reset(long seed)
+    {
+        this.seed = seed;
+        random.setSeed(seed);
+
+        snake = new Snake(new Point(SNAKE_START_X, SNAKE_START_Y), wallCollision, cellSize, mapHeight, mapWidth);
+        snake.addBodyPart(Direction.Left);
+        snake.addBodyPart(Direction.Left);
+
+        snakeDirection = INITIAL_SNAKE_DIR;
+        state = GameState.Running;
+        lastCollision = CollisionType.None;
+        score = 0;
+        tickCount = 0;
+
+        generateFood();
+    }
+
+    /**
+     * Returns false if the snake would turn back onto itself by going in the given direction.
+     */
+    public boolean canTurn(Direction dir)
+    {
+        return dir.getOpposite() != snakeDirection;
+    }
+
+    /**
+     * Advances the game by one tick, moving the snake in the given direction. A direction that would
+     * reverse the snake is ignored and the snake keeps its current direction instead.
+     */
+    public StepResult step(Direction dir)
+    {
+        if (state != GameState.Running)
+        {
+            return StepResult.Ignored;
+        }
+
+        if (dir != null && canTurn(dir))
+        {
+            snakeDirection = dir;
+        }
+
+        tickCount++;
+
+        CollisionType collisionTypeAfterMoving = snake.move(snakeDirection);
+        if (collisionTypeAfterMoving != CollisionType.None) // Either collided with a wall (if there are walls) or one of its body parts
+        {
+            lastCollision = collisionTypeAfterMoving;
+            state = GameState.Lost;
+
+            if (FlightRecording.isActive())
+            {
+                CollisionEvent collisionEvent = new CollisionEvent();
+                collisionEvent.collisionType = collisionTypeAfterMoving.toString();
+                collisionEvent.tick = tickCount;
+                collisionEvent.snakeLength = snake.getLength();
+                collisionEvent.score = score;
+                collisionEvent.commit();
+            }
+
+            return StepResult.Collided;
+        }
+
+        if (snake.getHeadCell() != foodCell)
+        {
+            return StepResult.Moved;
+        }
+
+        score += FOOD_POINTS_WORTH;
+        snake.addBodyPart(snake.getTailLastCell());
+
+        generateFood();
+
+        return state == GameState.Won ? StepResult.Won : StepResult.FoodEaten;
+    }
+
+    private void generateFood()
+    {
+        OccupancyGrid occupancyGrid = snake.getOccupancyGrid();
+
+        if (occupancyGrid.getFreeCellCount() == 0)
+        {
+            state = GameState.Won;
+        }
+        else
+        {
+            FoodSpawnEvent foodSpawnEvent = FlightRecording.isActive() ? new FoodSpawnEvent() : null;
+
+            if (foodSpawnEvent != null)
+            {
+                foodSpawnEvent.begin();
+            }
+
+            int randIndex = random.nextInt(occupancyGrid.getFreeCellCount());
+            foodCell = occupancyGrid.getFreeCell(randIndex);
+
+            if (foodSpawnEvent != null && foodSpawnEvent.shouldCommit())
+            {
+                foodSpawnEvent.cell = foodCell;
+                foodSpawnEvent.freeCellCount = occupancyGrid.getFreeCellCount();
+                foodSpawnEvent.commit();
+            }
+        }
+    }
+}
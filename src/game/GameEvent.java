@@ -0,0 +1,70 @@
+package game;
+
+/**
+ * An immutable record of something that happened in a game, along with the state of the game right after it.
+ */
+public class GameEvent
+{
+    private final GameEventType type;
+    private final long tick, timeNanos;
+    private final int score, snakeLength, headCell;
+    private final Direction snakeDirection;
+
+    public GameEvent(GameEventType type, long tick, int score, int snakeLength, int headCell, Direction snakeDirection)
+    {
+        this.type = type;
+        this.tick = tick;
+        this.score = score;
+        this.snakeLength = snakeLength;
+        this.headCell = headCell;
+        this.snakeDirection = snakeDirection;
+        this.timeNanos = System.nanoTime();
+    }
+
+    public GameEventType getType()
+    {
+        return type;
+    }
+
+    public long getTick()
+    {
+        return tick;
+    }
+
+    /**
+     * Returns the System.nanoTime() at which the event was created.
+     */
+    public long getTimeNanos()
+    {
+        return timeNanos;
+    }
+
+    public int getScore()
+    {
+        return score;
+    }
+
+    public int getSnakeLength()
+    {
+        return snakeLength;
+    }
+
+    /**
+     * Returns the packed cell id (y * columns + x) of the snake's head.
+     */
+    public int getHeadCell()
+    {
+        return headCell;
+    }
+
+    public Direction getSnakeDirection()
+    {
+        return snakeDirection;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + " at tick " + tick + " (score " + score + ", length " + snakeLength + ")";
+    }
+}
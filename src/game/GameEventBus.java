@@ -0,0 +1,82 @@
+package game;
+
+import javax.swing.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands game events from the game loop over to the listeners on the event dispatch thread, so that UI work
+ * (titles, dialogs) never runs on and never blocks the game loop. Events don't carry any data, listeners read
+ * the current state of the game when they are notified, so repeated events are coalesced: posting only sets
+ * a bit, and at most one dispatch is queued on the EDT at a time however many events are posted meanwhile.
+ * Listeners may be added and removed from any thread.
+ */
+public class GameEventBus
+{
+    public static final int SCORE_UPDATED = 1, GAME_WON = 1 << 1, GAME_OVER = 1 << 2, GAME_STARTED = 1 << 3;
+
+    private final CopyOnWriteArrayList<SnakeGameContainerListener> listeners = new CopyOnWriteArrayList<SnakeGameContainerListener>();
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+    private final Runnable dispatcher = this::dispatchPendingEvents;
+
+    public void addListener(SnakeGameContainerListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SnakeGameContainerListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues one of the event flags for the EDT, doesn't block and may be called from any thread.
+     */
+    public void post(int event)
+    {
+        int previousEvents;
+
+        do
+        {
+            previousEvents = pendingEvents.get();
+        }
+        while (!pendingEvents.compareAndSet(previousEvents, previousEvents | event));
+
+        // Only the event that finds nothing pending has to queue a dispatch, the others ride along with it
+        if (previousEvents == 0)
+        {
+            SwingUtilities.invokeLater(dispatcher);
+        }
+    }
+
+    /**
+     * Delivers the pending events, the end of a game before the start of the next one if both are pending.
+     */
+    private void dispatchPendingEvents()
+    {
+        int events = pendingEvents.getAndSet(0);
+
+        for (SnakeGameContainerListener listener : listeners)
+        {
+            if ((events & SCORE_UPDATED) != 0)
+            {
+                listener.onScoreUpdated();
+            }
+
+            if ((events & GAME_WON) != 0)
+            {
+                listener.onGameWon();
+            }
+
+            if ((events & GAME_OVER) != 0)
+            {
+                listener.onGameOver();
+            }
+
+            if ((events & GAME_STARTED) != 0)
+            {
+                listener.onGameStarted();
+            }
+        }
+    }
+}
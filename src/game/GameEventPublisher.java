@@ -0,0 +1,296 @@
+package game;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes game events to any number of Flow subscribers without ever blocking the game loop. Every
+ * subscriber gets its own bounded buffer and is fed from the executor as it requests events, a subscriber
+ * that falls behind only loses events according to its OverflowPolicy and never slows down the game.
+ */
+public class GameEventPublisher implements Flow.Publisher<GameEvent>
+{
+    public static final int DEFAULT_BUFFER_CAPACITY = 256;
+
+    private final CopyOnWriteArrayList<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<BufferedSubscription>();
+    private final Executor executor;
+    private volatile boolean closed = false;
+
+    public GameEventPublisher()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public GameEventPublisher(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes with a buffer of DEFAULT_BUFFER_CAPACITY events that keeps the latest events when full.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super GameEvent> subscriber)
+    {
+        subscribe(subscriber, DEFAULT_BUFFER_CAPACITY, OverflowPolicy.KeepLatest);
+    }
+
+    public void subscribe(Flow.Subscriber<? super GameEvent> subscriber, int bufferCapacity, OverflowPolicy overflowPolicy)
+    {
+        if (subscriber == null)
+        {
+            throw new NullPointerException("The subscriber must not be null.");
+        }
+
+        if (bufferCapacity <= 0)
+        {
+            throw new IllegalArgumentException("The buffer capacity must be positive.");
+        }
+
+        BufferedSubscription subscription = new BufferedSubscription(subscriber, bufferCapacity, overflowPolicy);
+
+        subscriber.onSubscribe(subscription);
+
+        if (closed)
+        {
+            subscription.complete();
+        }
+        else if (!subscription.isCancelled()) // The subscriber may have cancelled, or requested a bad amount, from onSubscribe()
+        {
+            subscriptions.add(subscription);
+        }
+    }
+
+    /**
+     * Returns true if anyone is subscribed, events don't need to be created otherwise.
+     */
+    public boolean hasSubscribers()
+    {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscriberCount()
+    {
+        return subscriptions.size();
+    }
+
+    /**
+     * Hands the event to every subscriber's buffer, never blocks. May be called from any thread.
+     */
+    public void publish(GameEvent event)
+    {
+        for (BufferedSubscription subscription : subscriptions)
+        {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Completes every subscription once its buffered events have been delivered, nothing can be published afterwards.
+     */
+    public void close()
+    {
+        closed = true;
+
+        for (BufferedSubscription subscription : subscriptions)
+        {
+            subscription.complete();
+        }
+
+        subscriptions.clear();
+    }
+
+    /**
+     * A ring buffer of events for one subscriber. Offering and requesting schedule a drain on the executor,
+     * and the drain counter makes sure only one drain runs at a time so the subscriber is called serially.
+     */
+    private class BufferedSubscription implements Flow.Subscription, Runnable
+    {
+        private final Flow.Subscriber<? super GameEvent> subscriber;
+        private final OverflowPolicy overflowPolicy;
+        private final GameEvent[] buffer;
+        private final AtomicInteger drainRequests = new AtomicInteger();
+
+        // Guarded by this
+        private int head, count;
+        private long demand;
+        private boolean cancelled, completed, completionSignalled;
+        private Throwable error;
+
+        private BufferedSubscription(Flow.Subscriber<? super GameEvent> subscriber, int bufferCapacity, OverflowPolicy overflowPolicy)
+        {
+            this.subscriber = subscriber;
+            this.overflowPolicy = overflowPolicy;
+            this.buffer = new GameEvent[bufferCapacity];
+        }
+
+        private void offer(GameEvent event)
+        {
+            synchronized (this)
+            {
+                if (cancelled || completed)
+                {
+                    return;
+                }
+
+                if (count == buffer.length)
+                {
+                    if (overflowPolicy == OverflowPolicy.DropNewest)
+                    {
+                        return;
+                    }
+
+                    buffer[head] = null;
+                    head = (head + 1) % buffer.length;
+                    count--;
+                }
+
+                buffer[(head + count) % buffer.length] = event;
+                count++;
+            }
+
+            scheduleDrain();
+        }
+
+        private synchronized boolean isCancelled()
+        {
+            return cancelled || error != null;
+        }
+
+        private void complete()
+        {
+            synchronized (this)
+            {
+                completed = true;
+            }
+
+            scheduleDrain();
+        }
+
+        @Override
+        public void request(long n)
+        {
+            synchronized (this)
+            {
+                if (n <= 0)
+                {
+                    // Rule 3.9 of the reactive streams specification
+                    error = new IllegalArgumentException("The number of requested events must be positive, got " + n + ".");
+                }
+                else
+                {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel()
+        {
+            synchronized (this)
+            {
+                cancelled = true;
+                count = 0;
+                Arrays.fill(buffer, null);
+            }
+
+            subscriptions.remove(this);
+        }
+
+        private void scheduleDrain()
+        {
+            if (drainRequests.getAndIncrement() == 0)
+            {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            int missedDrains = 1;
+
+            do
+            {
+                drain();
+
+                missedDrains = drainRequests.addAndGet(-missedDrains);
+            }
+            while (missedDrains != 0);
+        }
+
+        private void drain()
+        {
+            while (true)
+            {
+                GameEvent event = null;
+                Throwable signalledError = null;
+                boolean signalComplete = false;
+
+                synchronized (this)
+                {
+                    if (cancelled)
+                    {
+                        return;
+                    }
+
+                    if (error != null)
+                    {
+                        signalledError = error;
+                        cancelled = true;
+                    }
+                    else if (count > 0 && demand > 0)
+                    {
+                        event = buffer[head];
+                        buffer[head] = null;
+                        head = (head + 1) % buffer.length;
+                        count--;
+                        demand--;
+                    }
+                    else if (count == 0 && completed && !completionSignalled)
+                    {
+                        signalComplete = true;
+                        completionSignalled = true;
+                    }
+                    else
+                    {
+                        return;
+                    }
+                }
+
+                if (signalledError != null)
+                {
+                    subscriptions.remove(this);
+                    subscriber.onError(signalledError);
+
+                    return;
+                }
+
+                if (signalComplete)
+                {
+                    subscriber.onComplete();
+
+                    return;
+                }
+
+                try
+                {
+                    subscriber.onNext(event);
+                }
+                catch (RuntimeException ex)
+                {
+                    cancel();
+                    subscriber.onError(ex);
+
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package game;
+
+public enum GameEventType
+{
+    GameStarted,
+    Tick,
+    Move,
+    Eat,
+    ScoreUpdated,
+    GameWon,
+    GameOver
+}
@@ -0,0 +1,365 @@
+package game;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs game sessions on a single long-lived thread. Only one session runs at a time: starting a new
+ * session stops the current one first, so two loops never overlap and no thread is created per game.
+ * Each session is driven with a fixed timestep: elapsed time is accumulated and consumed in whole ticks,
+ * so time spent ticking and repainting doesn't stretch the tick period. After a long stall at most
+ * MAX_CATCH_UP_TICKS ticks are run back to back and the rest of the backlog is dropped.
+ */
+public class GameLoop
+{
+    private final double DEFAULT_TICK_RATE = 1000.0 / 75; // One tick every 75 ms
+    private final int MAX_CATCH_UP_TICKS = 5;
+    private final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final double MAX_TICK_RATE = 1_000_000_000.0; // One tick per nanosecond
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChangedCondition = lock.newCondition();
+    private final Thread loopThread;
+
+    private GameLoopHandler pendingHandler;
+    private boolean sessionActive = false, shutdown = false;
+    private volatile boolean stopRequested = false, paused = false;
+    private volatile long tickPeriodNanos = (long)(NANOS_PER_SECOND / DEFAULT_TICK_RATE);
+    private volatile double achievedTickRate = 0;
+    private long tickLatenessNanos = 0;
+
+    public GameLoop(String threadName)
+    {
+        loopThread = new Thread(this::run, threadName);
+        loopThread.setDaemon(true);
+        loopThread.start();
+    }
+
+    public double getTickRate()
+    {
+        return (double)NANOS_PER_SECOND / tickPeriodNanos;
+    }
+
+    public long getTickPeriodNanos()
+    {
+        return tickPeriodNanos;
+    }
+
+    /**
+     * Returns true if the loop can run at the rate: NaN, infinite rates and rates too fast for the tick period to
+     * be counted in nanoseconds would leave it without a period and make it spin.
+     */
+    public static boolean isValidTickRate(double ticksPerSecond)
+    {
+        return ticksPerSecond > 0 && ticksPerSecond <= MAX_TICK_RATE;
+    }
+
+    /**
+     * Sets how many times per second the game advances, takes effect immediately.
+     */
+    public void setTickRate(double ticksPerSecond)
+    {
+        if (!isValidTickRate(ticksPerSecond))
+        {
+            throw new IllegalArgumentException("The tick rate must be positive and at most one tick per nanosecond.");
+        }
+
+        tickPeriodNanos = (long)(NANOS_PER_SECOND / ticksPerSecond);
+        LockSupport.unpark(loopThread);
+    }
+
+    /**
+     * Returns the number of ticks per second that the loop actually managed over the last second.
+     */
+    public double getAchievedTickRate()
+    {
+        return achievedTickRate;
+    }
+
+    /**
+     * Returns how long after its scheduled time the current tick started, only valid from within onTick().
+     */
+    public long getTickLatenessNanos()
+    {
+        return tickLatenessNanos;
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    public void setPaused(boolean pause)
+    {
+        lock.lock();
+
+        try
+        {
+            paused = pause;
+
+            stateChangedCondition.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public boolean isRunning()
+    {
+        lock.lock();
+
+        try
+        {
+            return sessionActive || pendingHandler != null;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the current session (if any) and starts a new one driving the given handler. When called from
+     * any other thread than the loop thread, this returns once the new session has taken over.
+     */
+    public void start(GameLoopHandler handler)
+    {
+        lock.lock();
+
+        try
+        {
+            if (shutdown)
+            {
+                throw new IllegalStateException("The game loop has been shut down.");
+            }
+
+            pendingHandler = handler;
+            stopRequested = sessionActive;
+
+            stateChangedCondition.signalAll();
+            LockSupport.unpark(loopThread);
+
+            if (Thread.currentThread() != loopThread)
+            {
+                while (pendingHandler == handler && !shutdown)
+                {
+                    stateChangedCondition.awaitUninterruptibly();
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Asks the current session to stop without waiting for it, see awaitStop().
+     */
+    public void stop()
+    {
+        lock.lock();
+
+        try
+        {
+            pendingHandler = null;
+            stopRequested = true;
+
+            stateChangedCondition.signalAll();
+            LockSupport.unpark(loopThread);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until no session is running. Returns straight away when called from the loop thread itself.
+     */
+    public void awaitStop()
+    {
+        if (Thread.currentThread() == loopThread)
+        {
+            return;
+        }
+
+        lock.lock();
+
+        try
+        {
+            while (sessionActive || pendingHandler != null)
+            {
+                stateChangedCondition.awaitUninterruptibly();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public void stopAndAwait()
+    {
+        stop();
+        awaitStop();
+    }
+
+    /**
+     * Stops the current session and lets the loop thread exit, the game loop can't be used afterwards.
+     */
+    public void shutdown()
+    {
+        lock.lock();
+
+        try
+        {
+            shutdown = true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        stopAndAwait();
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            GameLoopHandler handler;
+
+            lock.lock();
+
+            try
+            {
+                while (pendingHandler == null && !shutdown)
+                {
+                    stateChangedCondition.awaitUninterruptibly();
+                }
+
+                if (shutdown)
+                {
+                    return;
+                }
+
+                handler = pendingHandler;
+                pendingHandler = null;
+                sessionActive = true;
+                stopRequested = false;
+                paused = false;
+
+                stateChangedCondition.signalAll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            try
+            {
+                runSession(handler);
+            }
+            catch (RuntimeException ex)
+            {
+                System.out.println("Exception thrown in game loop: " + ex.toString());
+            }
+            finally
+            {
+                lock.lock();
+
+                try
+                {
+                    sessionActive = false;
+
+                    stateChangedCondition.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void runSession(GameLoopHandler handler)
+    {
+        long previousTime = System.nanoTime();
+        long accumulatedNanos = 0;
+        long rateWindowStart = previousTime;
+        int rateWindowTicks = 0;
+        boolean sessionOver = false;
+
+        achievedTickRate = 0;
+
+        while (!stopRequested && !sessionOver)
+        {
+            long currentTime = System.nanoTime();
+            long period = tickPeriodNanos;
+
+            accumulatedNanos += currentTime - previousTime;
+            previousTime = currentTime;
+
+            if (!paused)
+            {
+                accumulatedNanos = Math.min(accumulatedNanos, MAX_CATCH_UP_TICKS * period);
+
+                while (accumulatedNanos >= period && !stopRequested && !sessionOver)
+                {
+                    tickLatenessNanos = accumulatedNanos - period;
+                    sessionOver = !handler.onTick();
+
+                    accumulatedNanos -= period;
+                    rateWindowTicks++;
+                }
+
+                if (currentTime - rateWindowStart >= NANOS_PER_SECOND)
+                {
+                    achievedTickRate = (double)rateWindowTicks * NANOS_PER_SECOND / (currentTime - rateWindowStart);
+                    rateWindowStart = currentTime;
+                    rateWindowTicks = 0;
+                }
+
+                handler.onFrame();
+
+                if (!sessionOver)
+                {
+                    LockSupport.parkNanos(period - accumulatedNanos);
+                }
+            }
+            else
+            {
+                waitWhilePaused();
+
+                // Don't let the time spent paused turn into a burst of catch-up ticks
+                previousTime = System.nanoTime();
+                accumulatedNanos = 0;
+                rateWindowStart = previousTime;
+                rateWindowTicks = 0;
+            }
+        }
+    }
+
+    /**
+     * Blocks the loop thread until the session is unpaused or stopped, so a paused game doesn't use any CPU.
+     */
+    private void waitWhilePaused()
+    {
+        lock.lock();
+
+        try
+        {
+            while (paused && !stopRequested)
+            {
+                stateChangedCondition.awaitUninterruptibly();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
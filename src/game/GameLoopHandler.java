@@ -0,0 +1,13 @@
+package game;
+
+public interface GameLoopHandler {
+    /**
+     * Called once per tick, returning false ends the current session.
+     */
+    boolean onTick();
+
+    /**
+     * Called after the ticks due in one iteration of the loop have run.
+     */
+    void onFrame();
+}
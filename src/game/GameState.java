@@ -0,0 +1,7 @@
+package game;
+
+public enum GameState {
+    Running,
+    Lost,
+    Won
+}
@@ -0,0 +1,62 @@
+package game;
+
+/**
+ * Plays the game of a SnakeGameContainer on the calling thread by running the same tick the game loop runs,
+ * with neither the game loop nor the render loop running and nothing drawn, so checks such as AllocationCheck
+ * measure the real tick path: input, engine, replay recording, snapshots, events and metrics. Works with
+ * java.awt.headless set. Only the thread that calls start() may use the game from then on.
+ */
+public class HeadlessGame
+{
+    private final SnakeGameContainer snakeGame = new SnakeGameContainer();
+
+    public SnakeGameContainer getSnakeGame()
+    {
+        return snakeGame;
+    }
+
+    /**
+     * Starts a new game, resetting the board if the last game has ended.
+     */
+    public void start()
+    {
+        snakeGame.prepareGame();
+    }
+
+    /**
+     * Runs one tick of the game, returns false once the game has ended.
+     */
+    public boolean tick()
+    {
+        return snakeGame.tick();
+    }
+
+    /**
+     * Queues a direction change like a key press does.
+     */
+    public void setSnakeDirection(Direction dir)
+    {
+        snakeGame.setSnakeDirection(dir);
+    }
+
+    /**
+     * Shuts the container down, see SnakeGameContainer.shutdown().
+     */
+    public void shutdown()
+    {
+        snakeGame.shutdown();
+    }
+
+    public GameEngine getEngine()
+    {
+        return snakeGame.getEngine();
+    }
+
+    /**
+     * Returns the size of the replay recorder's buffer, which doubles whenever a long game fills it.
+     */
+    public int getReplayCapacity()
+    {
+        return snakeGame.getReplayRecorder().getCapacity();
+    }
+}
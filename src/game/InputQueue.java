@@ -0,0 +1,124 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer/single-consumer ring buffer of direction changes. The producer (the event
+ * dispatch thread) offers directions as keys are pressed and the consumer (the game loop) polls one per
+ * tick, so quick key sequences within one tick aren't lost. Neither side takes a lock.
+ */
+public class InputQueue
+{
+    private final Direction[] directions;
+    private final long[] enqueueTimes;
+    private final int mask;
+
+    // head is only written by the consumer, or by clear() while there is none, and tail only by the producer
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+    private volatile long lastInputLatencyNanos = 0;
+    private long lastPolledEnqueueTime = 0;
+
+    /**
+     * The capacity is rounded up to the next power of two.
+     */
+    public InputQueue(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+
+        directions = new Direction[size];
+        enqueueTimes = new long[size];
+        mask = size - 1;
+    }
+
+    public int getCapacity()
+    {
+        return directions.length;
+    }
+
+    public int size()
+    {
+        return (int)(tail.get() - head.get());
+    }
+
+    public boolean isEmpty()
+    {
+        return tail.get() == head.get();
+    }
+
+    /**
+     * Producer side, returns false and drops the input if the queue is full.
+     */
+    public boolean offer(Direction dir)
+    {
+        long currentTail = tail.get();
+
+        if (currentTail - head.get() >= directions.length)
+        {
+            return false;
+        }
+
+        int index = (int)currentTail & mask;
+        directions[index] = dir;
+        enqueueTimes[index] = System.nanoTime();
+
+        tail.lazySet(currentTail + 1);
+
+        return true;
+    }
+
+    /**
+     * Consumer side, returns the oldest queued direction or null if there is none.
+     */
+    public Direction poll()
+    {
+        long currentHead = head.get();
+
+        if (currentHead == tail.get())
+        {
+            return null;
+        }
+
+        int index = (int)currentHead & mask;
+        Direction dir = directions[index];
+        lastPolledEnqueueTime = enqueueTimes[index];
+        directions[index] = null;
+
+        head.lazySet(currentHead + 1);
+
+        return dir;
+    }
+
+    /**
+     * Consumer side, records how long the last polled direction waited between being offered and being applied.
+     */
+    public void markLastPolledApplied()
+    {
+        lastInputLatencyNanos = System.nanoTime() - lastPolledEnqueueTime;
+    }
+
+    public long getLastPolledEnqueueTime()
+    {
+        return lastPolledEnqueueTime;
+    }
+
+    public long getLastInputLatencyNanos()
+    {
+        return lastInputLatencyNanos;
+    }
+
+    /**
+     * Drops all queued directions. Writes head like the consumer does, so it must only be called while the
+     * consumer is stopped, e.g. between games, and the caller has to make sure it is.
+     */
+    public void clear()
+    {
+        long currentTail = tail.get();
+
+        for (long i = head.get(); i < currentTail; i++)
+        {
+            directions[(int)i & mask] = null;
+        }
+
+        head.set(currentTail);
+    }
+}
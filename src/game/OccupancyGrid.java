@@ -0,0 +1,88 @@
+package game;
+
+/**
+ * Keeps track of which cells of the map are occupied so that cell lookups take constant time.
+ * The free cells are additionally kept packed at the front of a dense array (removal swaps the
+ * last free cell into the gap) so that a random free cell can be picked in constant time.
+ */
+public class OccupancyGrid
+{
+    private final int[] freeCells;
+    private final int[] freeCellPositions;
+    private int freeCellCount;
+
+    public OccupancyGrid(int cellCount)
+    {
+        freeCells = new int[cellCount];
+        freeCellPositions = new int[cellCount];
+
+        for (int cell = 0; cell < cellCount; cell++)
+        {
+            freeCells[cell] = cell;
+            freeCellPositions[cell] = cell;
+        }
+
+        freeCellCount = cellCount;
+    }
+
+    public int getCellCount()
+    {
+        return freeCells.length;
+    }
+
+    public int getFreeCellCount()
+    {
+        return freeCellCount;
+    }
+
+    /**
+     * Returns one of the free cells, index must be between 0 and getFreeCellCount() - 1.
+     */
+    public int getFreeCell(int index)
+    {
+        return freeCells[index];
+    }
+
+    public boolean isOccupied(int cell)
+    {
+        return freeCellPositions[cell] >= freeCellCount;
+    }
+
+    public boolean isFree(int cell)
+    {
+        return freeCellPositions[cell] < freeCellCount;
+    }
+
+    public void occupy(int cell)
+    {
+        if (isOccupied(cell))
+        {
+            return;
+        }
+
+        freeCellCount--;
+        swapCells(freeCellPositions[cell], freeCellCount);
+    }
+
+    public void release(int cell)
+    {
+        if (isFree(cell))
+        {
+            return;
+        }
+
+        swapCells(freeCellPositions[cell], freeCellCount);
+        freeCellCount++;
+    }
+
+    private void swapCells(int firstPosition, int secondPosition)
+    {
+        int firstCell = freeCells[firstPosition];
+        int secondCell = freeCells[secondPosition];
+
+        freeCells[firstPosition] = secondCell;
+        freeCells[secondPosition] = firstCell;
+        freeCellPositions[secondCell] = firstPosition;
+        freeCellPositions[firstCell] = secondPosition;
+    }
+}
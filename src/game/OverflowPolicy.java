@@ -0,0 +1,10 @@
+package game;
+
+/**
+ * What a subscriber's buffer does with a new event when it is full.
+ */
+public enum OverflowPolicy
+{
+    DropNewest, // Keeps the buffered events and drops the new one
+    KeepLatest // Drops the oldest buffered event to make room for the new one
+}
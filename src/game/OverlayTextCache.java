@@ -0,0 +1,67 @@
+package game;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.util.HashMap;
+
+/**
+ * Lays out each overlay message once, centred in the given bounds, and keeps the layout so that drawing
+ * a message every frame doesn't have to measure the text again.
+ */
+public class OverlayTextCache
+{
+    private final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, false);
+
+    private final Font font;
+    private final Color colour;
+    private final Rectangle bounds;
+    private final HashMap<String, CachedLayout> layouts = new HashMap<String, CachedLayout>();
+
+    private static class CachedLayout
+    {
+        private final TextLayout layout;
+        private final float x, y;
+
+        private CachedLayout(TextLayout layout, float x, float y)
+        {
+            this.layout = layout;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    public OverlayTextCache(Font font, Color colour, Rectangle bounds)
+    {
+        this.font = font;
+        this.colour = colour;
+        this.bounds = new Rectangle(bounds);
+    }
+
+    public void draw(Graphics2D g2d, String message)
+    {
+        CachedLayout cachedLayout = layouts.get(message);
+
+        if (cachedLayout == null)
+        {
+            cachedLayout = layOut(message);
+            layouts.put(message, cachedLayout);
+        }
+
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setColor(colour);
+
+        cachedLayout.layout.draw(g2d, cachedLayout.x, cachedLayout.y);
+    }
+
+    private CachedLayout layOut(String message)
+    {
+        TextLayout layout = new TextLayout(message, font, FONT_RENDER_CONTEXT);
+        float height = layout.getAscent() + layout.getDescent() + layout.getLeading();
+
+        float x = bounds.x + (bounds.width - layout.getAdvance()) / 2;
+        float y = bounds.y + (bounds.height - height) / 2 + layout.getAscent();
+
+        return new CachedLayout(layout, x, y);
+    }
+}
@@ -0,0 +1,108 @@
+package game;
+
+/**
+ * A copy of everything needed to draw one tick of the game. Snapshots are filled in by the game loop and
+ * handed to the renderer through a SnapshotExchange, the renderer must treat them as read-only.
+ */
+public class RenderSnapshot
+{
+    private int[] bodyCells = new int[0];
+    private int length, columns, rows, foodCell, score;
+    private Direction snakeDirection;
+    private GameState state;
+    private volatile long sequence = -1;
+    private long tick, publishTimeNanos, inputTimeNanos;
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the packed cell id of a body part, where index 0 is the head and getLength() - 1 is the tail.
+     */
+    public int getBodyPartCell(int index)
+    {
+        return bodyCells[index];
+    }
+
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    public int getFoodCell()
+    {
+        return foodCell;
+    }
+
+    public int getScore()
+    {
+        return score;
+    }
+
+    public Direction getSnakeDirection()
+    {
+        return snakeDirection;
+    }
+
+    public GameState getState()
+    {
+        return state;
+    }
+
+    /**
+     * Increases by one with every published snapshot, -1 if nothing has been published into this snapshot yet.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public long getTick()
+    {
+        return tick;
+    }
+
+    public long getPublishTimeNanos()
+    {
+        return publishTimeNanos;
+    }
+
+    /**
+     * Returns when the last key press applied to the game up to this snapshot was queued, 0 if there was none.
+     */
+    public long getInputTimeNanos()
+    {
+        return inputTimeNanos;
+    }
+
+    void update(GameEngine engine, long sequence, long inputTimeNanos)
+    {
+        Snake snake = engine.getSnake();
+
+        if (bodyCells.length < snake.getLength())
+        {
+            bodyCells = new int[snake.getOccupancyGrid().getCellCount()];
+        }
+
+        snake.copyBodyCells(bodyCells);
+
+        this.length = snake.getLength();
+        this.columns = snake.getColumns();
+        this.rows = snake.getRows();
+        this.foodCell = engine.getFoodCell();
+        this.score = engine.getScore();
+        this.snakeDirection = engine.getSnakeDirection();
+        this.state = engine.getState();
+        this.sequence = sequence;
+        this.tick = engine.getTickCount();
+        this.publishTimeNanos = System.nanoTime();
+        this.inputTimeNanos = inputTimeNanos;
+    }
+}
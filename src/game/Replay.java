@@ -0,0 +1,225 @@
+package game;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A recorded game: the board settings, the seed the engine was reset with and the direction of the snake on
+ * every tick. Directions are stored as runs, each run being a varint of (runLength << 2 | direction), so a
+ * snake going straight costs a byte or two however long it goes and whole games take a few KB.
+ */
+public class Replay
+{
+    private static final int MAGIC = 0x534E4B52; // "SNKR"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_VARINT_BYTES = 10; // A run covers at least one tick and its varint holds 64 bits
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    private final long seed, tickCount;
+    private final boolean wallCollision;
+    private final int cellSize, mapHeight, mapWidth;
+    private final double tickRate;
+    private final byte[] directionRuns;
+
+    Replay(long seed, boolean wallCollision, int cellSize, int mapHeight, int mapWidth, double tickRate, long tickCount, byte[] directionRuns)
+    {
+        this.seed = seed;
+        this.wallCollision = wallCollision;
+        this.cellSize = cellSize;
+        this.mapHeight = mapHeight;
+        this.mapWidth = mapWidth;
+        this.tickRate = tickRate;
+        this.tickCount = tickCount;
+        this.directionRuns = directionRuns;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public boolean hasWallCollision()
+    {
+        return wallCollision;
+    }
+
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    public int getMapHeight()
+    {
+        return mapHeight;
+    }
+
+    public int getMapWidth()
+    {
+        return mapWidth;
+    }
+
+    /**
+     * Returns the number of ticks per second the game was played at.
+     */
+    public double getTickRate()
+    {
+        return tickRate;
+    }
+
+    public long getTickCount()
+    {
+        return tickCount;
+    }
+
+    /**
+     * Returns the number of bytes taken by the recorded directions.
+     */
+    public int getEncodedSize()
+    {
+        return directionRuns.length;
+    }
+
+    /**
+     * Returns true if the replay was recorded on a board with the same settings as the engine's.
+     */
+    public boolean isPlayableOn(GameEngine engine)
+    {
+        return engine.hasWallCollision() == wallCollision && engine.getCellSize() == cellSize
+            && engine.getMapHeight() == mapHeight && engine.getMapWidth() == mapWidth;
+    }
+
+    byte[] getDirectionRuns()
+    {
+        return directionRuns;
+    }
+
+    public void write(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeByte(FORMAT_VERSION);
+        dataOutputStream.writeLong(seed);
+        dataOutputStream.writeBoolean(wallCollision);
+        dataOutputStream.writeInt(cellSize);
+        dataOutputStream.writeInt(mapHeight);
+        dataOutputStream.writeInt(mapWidth);
+        dataOutputStream.writeDouble(tickRate);
+        dataOutputStream.writeLong(tickCount);
+        dataOutputStream.writeInt(directionRuns.length);
+        dataOutputStream.write(directionRuns);
+        dataOutputStream.flush();
+    }
+
+    public static Replay read(InputStream inputStream) throws IOException
+    {
+        DataInputStream dataInputStream = new DataInputStream(inputStream);
+
+        if (dataInputStream.readInt() != MAGIC)
+        {
+            throw new IOException("Not a replay file.");
+        }
+
+        int formatVersion = dataInputStream.readUnsignedByte();
+
+        if (formatVersion != FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported replay format version " + formatVersion + ".");
+        }
+
+        long seed = dataInputStream.readLong();
+        boolean wallCollision = dataInputStream.readBoolean();
+        int cellSize = dataInputStream.readInt();
+        int mapHeight = dataInputStream.readInt();
+        int mapWidth = dataInputStream.readInt();
+        double tickRate = dataInputStream.readDouble();
+        long tickCount = dataInputStream.readLong();
+        int directionRunsLength = dataInputStream.readInt();
+
+        if (cellSize <= 0 || mapHeight <= 0 || mapWidth <= 0 || !GameLoop.isValidTickRate(tickRate) || tickCount < 0 || directionRunsLength < 0
+            || ((long)directionRunsLength + MAX_VARINT_BYTES - 1) / MAX_VARINT_BYTES > tickCount)
+        {
+            throw new IOException("The replay file is corrupted.");
+        }
+
+        byte[] directionRuns = readDirectionRuns(dataInputStream, directionRunsLength);
+
+        if (countTicks(directionRuns) != tickCount)
+        {
+            throw new IOException("The replay file is corrupted.");
+        }
+
+        return new Replay(seed, wallCollision, cellSize, mapHeight, mapWidth, tickRate, tickCount, directionRuns);
+    }
+
+    /**
+     * Reads the direction runs in chunks, growing the buffer as they arrive, so a damaged length can't allocate
+     * much more than the stream actually holds.
+     */
+    private static byte[] readDirectionRuns(InputStream inputStream, int length) throws IOException
+    {
+        byte[] directionRuns = new byte[Math.min(length, READ_CHUNK_SIZE)];
+        int size = 0;
+
+        while (size < length)
+        {
+            if (size == directionRuns.length)
+            {
+                directionRuns = Arrays.copyOf(directionRuns, (int)Math.min(length, 2L * size));
+            }
+
+            int read = inputStream.read(directionRuns, size, directionRuns.length - size);
+
+            if (read < 0)
+            {
+                throw new IOException("The replay file is corrupted.");
+            }
+
+            size += read;
+        }
+
+        return directionRuns;
+    }
+
+    /**
+     * Returns the number of ticks covered by the direction runs, or -1 if a run is cut off or has an invalid length.
+     */
+    private static long countTicks(byte[] directionRuns)
+    {
+        long ticks = 0;
+        int position = 0;
+
+        while (position < directionRuns.length)
+        {
+            long value = 0;
+            int shift = 0;
+            int b;
+
+            do
+            {
+                if (position == directionRuns.length || shift > 63)
+                {
+                    return -1;
+                }
+
+                b = directionRuns[position++];
+                value |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((b & 0x80) != 0);
+
+            if (value >>> 2 == 0)
+            {
+                return -1;
+            }
+
+            ticks += value >>> 2;
+        }
+
+        return ticks;
+    }
+}
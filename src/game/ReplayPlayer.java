@@ -0,0 +1,122 @@
+package game;
+
+/**
+ * Plays a replay back on an engine one tick at a time, at whatever rate the caller steps it, or skips ahead
+ * by simulating the remaining ticks without drawing anything.
+ */
+public class ReplayPlayer
+{
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Replay replay;
+    private final GameEngine engine;
+    private final byte[] directionRuns;
+    private int position;
+    private Direction runDirection;
+    private long runRemaining, ticksPlayed;
+
+    /**
+     * Resets the engine with the replay's seed, the engine must have the same board settings as the replay.
+     */
+    public ReplayPlayer(Replay replay, GameEngine engine)
+    {
+        if (!replay.isPlayableOn(engine))
+        {
+            throw new IllegalArgumentException("The replay was recorded with different board settings.");
+        }
+
+        this.replay = replay;
+        this.engine = engine;
+        this.directionRuns = replay.getDirectionRuns();
+
+        engine.reset(replay.getSeed());
+    }
+
+    /**
+     * Creates an engine for the replay and plays the whole replay on it straight away.
+     */
+    public static GameEngine simulate(Replay replay)
+    {
+        GameEngine engine = new GameEngine(replay.hasWallCollision(), replay.getCellSize(), replay.getMapHeight(), replay.getMapWidth());
+        ReplayPlayer replayPlayer = new ReplayPlayer(replay, engine);
+
+        replayPlayer.fastForwardToEnd();
+
+        return engine;
+    }
+
+    public Replay getReplay()
+    {
+        return replay;
+    }
+
+    public GameEngine getEngine()
+    {
+        return engine;
+    }
+
+    public long getTicksPlayed()
+    {
+        return ticksPlayed;
+    }
+
+    public boolean isFinished()
+    {
+        return ticksPlayed >= replay.getTickCount();
+    }
+
+    /**
+     * Plays the next recorded tick, returns StepResult.Ignored once the replay is over.
+     */
+    public StepResult step()
+    {
+        if (isFinished())
+        {
+            return StepResult.Ignored;
+        }
+
+        if (runRemaining == 0)
+        {
+            readRun();
+        }
+
+        runRemaining--;
+        ticksPlayed++;
+
+        return engine.step(runDirection);
+    }
+
+    /**
+     * Plays ticks without pausing until the given number of ticks has been played or the replay is over.
+     */
+    public void fastForwardTo(long tick)
+    {
+        while (ticksPlayed < tick && step() != StepResult.Ignored)
+        {
+            // Keep stepping
+        }
+    }
+
+    public void fastForwardToEnd()
+    {
+        fastForwardTo(replay.getTickCount());
+    }
+
+    private void readRun()
+    {
+        long value = 0;
+        int shift = 0;
+        int b;
+
+        do
+        {
+            b = directionRuns[position++];
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        runDirection = DIRECTIONS[(int)(value & 3)];
+        runRemaining = value >>> 2;
+    }
+}
@@ -0,0 +1,127 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Records the direction of the snake on every tick of a game as runs of equal directions, see Replay.
+ * Recording only writes a few bytes whenever the snake turns and doesn't allocate otherwise.
+ */
+public class ReplayRecorder
+{
+    private final int INITIAL_CAPACITY = 256;
+
+    private byte[] directionRuns = new byte[INITIAL_CAPACITY];
+    private int size;
+    private boolean recording = false;
+    private long seed, tickCount;
+    private boolean wallCollision;
+    private int cellSize, mapHeight, mapWidth;
+    private double tickRate;
+    private Direction runDirection;
+    private long runLength;
+
+    public boolean isRecording()
+    {
+        return recording;
+    }
+
+    /**
+     * Returns how many bytes of runs fit before the buffer has to grow.
+     */
+    int getCapacity()
+    {
+        return directionRuns.length;
+    }
+
+    /**
+     * Starts recording a game that the engine has just been reset for, dropping anything recorded so far.
+     */
+    public void start(GameEngine engine, double tickRate)
+    {
+        this.seed = engine.getSeed();
+        this.wallCollision = engine.hasWallCollision();
+        this.cellSize = engine.getCellSize();
+        this.mapHeight = engine.getMapHeight();
+        this.mapWidth = engine.getMapWidth();
+        this.tickRate = tickRate;
+
+        size = 0;
+        tickCount = 0;
+        runDirection = null;
+        runLength = 0;
+        recording = true;
+    }
+
+    /**
+     * Records the direction the snake went in on the tick that was just played.
+     */
+    public void record(Direction dir)
+    {
+        if (!recording)
+        {
+            return;
+        }
+
+        if (dir != runDirection && runLength > 0)
+        {
+            writeRun();
+        }
+
+        runDirection = dir;
+        runLength++;
+        tickCount++;
+    }
+
+    /**
+     * Stops recording and returns the replay of everything recorded since start(), or null if nothing was being recorded.
+     */
+    public Replay finish()
+    {
+        if (!recording)
+        {
+            return null;
+        }
+
+        if (runLength > 0)
+        {
+            writeRun();
+        }
+
+        recording = false;
+
+        return new Replay(seed, wallCollision, cellSize, mapHeight, mapWidth, tickRate, tickCount, Arrays.copyOf(directionRuns, size));
+    }
+
+    /**
+     * Stops recording and drops everything recorded since start(), for games that are abandoned rather than ended.
+     */
+    public void discard()
+    {
+        recording = false;
+    }
+
+    private void writeRun()
+    {
+        long value = runLength << 2 | runDirection.ordinal();
+
+        while ((value & ~0x7FL) != 0)
+        {
+            writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        writeByte((int)value);
+
+        runLength = 0;
+    }
+
+    private void writeByte(int b)
+    {
+        if (size == directionRuns.length)
+        {
+            directionRuns = Arrays.copyOf(directionRuns, size * 2);
+        }
+
+        directionRuns[size++] = (byte)b;
+    }
+}
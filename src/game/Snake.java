@@ -1,22 +1,22 @@
 package game;
 
 import java.awt.*;
-import java.util.ArrayList;
 
 public class Snake {
     public static final Color SNAKE_COLOUR = new Color(50, 205, 50);
     public final boolean WALL_COLLISION;
     private final int LEFT_BOUND, TOP_BOUND, BOTTOM_BOUND, RIGHT_BOUND;
 
-    private ArrayList<Point> bodyPartsList;
+    // Body cells are stored as packed cell ids (y * columns + x) in a circular buffer, index 0 of the body is the head
+    private final int[] bodyCells;
+    private final OccupancyGrid occupancyGrid;
+    private final int columns, rows;
+    private int headIndex, length;
     private int snakeBodySize, mapHeight, mapWidth;
-    private Point tailLastLocation;
+    private int tailLastCell = -1;
 
     public Snake(Point startLoc, boolean wallCollision, int snakeBodySize, int mapHeight, int mapWidth)
     {
-        bodyPartsList = new ArrayList<Point>();
-        bodyPartsList.add(startLoc);
-
         this.WALL_COLLISION = wallCollision;
         this.snakeBodySize = snakeBodySize;
         this.mapHeight = mapHeight;
@@ -26,132 +26,202 @@ public class Snake {
         this.TOP_BOUND = 0;
         this.BOTTOM_BOUND = mapHeight / snakeBodySize;
         this.RIGHT_BOUND = mapWidth / snakeBodySize;
+
+        this.columns = RIGHT_BOUND;
+        this.rows = BOTTOM_BOUND;
+
+        bodyCells = new int[columns * rows];
+        occupancyGrid = new OccupancyGrid(columns * rows);
+
+        bodyCells[0] = toCell(startLoc.x, startLoc.y);
+        occupancyGrid.occupy(bodyCells[0]);
+        headIndex = 0;
+        length = 1;
+    }
+
+    public OccupancyGrid getOccupancyGrid()
+    {
+        return occupancyGrid;
+    }
+
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the packed cell id of a body part, where index 0 is the head and getLength() - 1 is the tail.
+     */
+    public int getBodyPartCell(int index)
+    {
+        return bodyCells[(headIndex + index) % bodyCells.length];
+    }
+
+    public int getBodyPartX(int index)
+    {
+        return getBodyPartCell(index) % columns;
+    }
+
+    public int getBodyPartY(int index)
+    {
+        return getBodyPartCell(index) / columns;
+    }
+
+    /**
+     * Copies the body cells, head first, into the given array which must hold at least getLength() cells.
+     */
+    public void copyBodyCells(int[] destination)
+    {
+        int firstPartLength = Math.min(length, bodyCells.length - headIndex);
+
+        System.arraycopy(bodyCells, headIndex, destination, 0, firstPartLength);
+        System.arraycopy(bodyCells, 0, destination, firstPartLength, length - firstPartLength);
+    }
+
+    public int getHeadCell()
+    {
+        return bodyCells[headIndex];
+    }
+
+    public int getTailLastCell()
+    {
+        return tailLastCell;
     }
 
-    public final ArrayList<Point> getBodyPartsList()
+    public int toCell(int x, int y)
     {
-        return bodyPartsList;
+        return y * columns + x;
     }
 
-    public Point getTailLastLocation()
+    public void addBodyPart(int cell)
     {
-        return tailLastLocation;
+        bodyCells[(headIndex + length) % bodyCells.length] = cell;
+        occupancyGrid.occupy(cell);
+        length++;
     }
 
     public void addBodyPart(Point loc)
     {
-        bodyPartsList.add(loc);
+        addBodyPart(toCell(loc.x, loc.y));
     }
 
     public void addBodyPart(Direction dir)
     {
-        Point tailLocation = getDirectionOffset(bodyPartsList.get(bodyPartsList.size() - 1), dir);
-        bodyPartsList.add(tailLocation);
+        int tailCell = getDirectionOffset(getBodyPartCell(length - 1), dir);
+        addBodyPart(tailCell);
 
-        tailLastLocation = tailLocation;
+        tailLastCell = tailCell;
     }
 
     public CollisionType move(Direction dir)
     {
-        tailLastLocation = bodyPartsList.get(bodyPartsList.size() - 1);
+        tailLastCell = getBodyPartCell(length - 1);
 
-        Point previousLocation = bodyPartsList.get(0);
-        Point newHeadLoc = getDirectionOffset(previousLocation, dir);
+        int newHeadCell = getDirectionOffset(getHeadCell(), dir);
 
-        if (willCollideWithBody(newHeadLoc))
-        {
-            return CollisionType.Body;
-        }
-
-        if (WALL_COLLISION && willGoOutOfBounds(newHeadLoc))
+        if (newHeadCell == -1) // The head left the map and walls are enabled
         {
             return CollisionType.Wall;
         }
 
-        bodyPartsList.set(0, newHeadLoc);
-
-        for (int i = 1; i < bodyPartsList.size(); i++)
+        if (willCollideWithBody(newHeadCell))
         {
-            Point tempPreviousLocation = bodyPartsList.get(i);
+            return CollisionType.Body;
+        }
 
-            bodyPartsList.set(i, previousLocation);
+        occupancyGrid.release(tailLastCell);
 
-            previousLocation = tempPreviousLocation;
-        }
+        headIndex = (headIndex - 1 + bodyCells.length) % bodyCells.length;
+        bodyCells[headIndex] = newHeadCell;
+        occupancyGrid.occupy(newHeadCell);
 
         return CollisionType.None;
     }
 
-    public boolean willCollideWithBody(Point headLoc)
+    /**
+     * The tail is excluded since it moves out of its cell during the same move.
+     */
+    public boolean willCollideWithBody(int headCell)
     {
-        for (int i = 1; i < bodyPartsList.size() - 1; i++)
-        {
-            if (headLoc.equals(bodyPartsList.get(i)))
-            {
-                return true;
-            }
-        }
+        return occupancyGrid.isOccupied(headCell) && headCell != getBodyPartCell(length - 1);
+    }
 
-        return false;
+    public boolean isCellFree(int cell)
+    {
+        return occupancyGrid.isFree(cell);
     }
 
-    public boolean willGoOutOfBounds(Point headLoc)
+    public boolean willGoOutOfBounds(int x, int y)
     {
-        return headLoc.y < 0 || headLoc.x < 0  || headLoc.y >= mapHeight / snakeBodySize || headLoc.x >= mapWidth / snakeBodySize;
+        return y < 0 || x < 0  || y >= mapHeight / snakeBodySize || x >= mapWidth / snakeBodySize;
     }
 
-    private Point getDirectionOffset(Point initialPoint, Direction dir)
+    /**
+     * Returns the cell next to the given cell in the given direction, or -1 if it lies outside of a walled map.
+     */
+    private int getDirectionOffset(int initialCell, Direction dir)
     {
-        Point offsetPoint = (Point)initialPoint.clone();
+        int x = initialCell % columns;
+        int y = initialCell / columns;
 
         if (dir == Direction.Down)
         {
-            offsetPoint.y++;
+            y++;
         }
 
         if (dir == Direction.Left)
         {
-            offsetPoint.x--;
+            x--;
         }
 
         if (dir == Direction.Right)
         {
-            offsetPoint.x++;
+            x++;
         }
 
         if (dir == Direction.Up)
         {
-            offsetPoint.y--;
+            y--;
         }
 
-        handleWallTeleportation(offsetPoint);
-
-        return offsetPoint;
-    }
-
-    private void handleWallTeleportation(Point headLoc)
-    {
         if (!WALL_COLLISION)
         {
-            if (headLoc.y < TOP_BOUND)
+            // Wall teleportation
+            if (y < TOP_BOUND)
             {
-                headLoc.y = BOTTOM_BOUND - 1;
+                y = BOTTOM_BOUND - 1;
             }
 
-            if (headLoc.x < LEFT_BOUND)
+            if (x < LEFT_BOUND)
             {
-                headLoc.x = RIGHT_BOUND - 1;
+                x = RIGHT_BOUND - 1;
             }
 
-            if (headLoc.y >= BOTTOM_BOUND)
+            if (y >= BOTTOM_BOUND)
             {
-                headLoc.y = TOP_BOUND;
+                y = TOP_BOUND;
             }
 
-            if (headLoc.x >= RIGHT_BOUND)
+            if (x >= RIGHT_BOUND)
             {
-                headLoc.x = LEFT_BOUND;
+                x = LEFT_BOUND;
             }
         }
+        else if (willGoOutOfBounds(x, y))
+        {
+            return -1;
+        }
+
+        return toCell(x, y);
     }
-}
\ No newline at end of file
+}
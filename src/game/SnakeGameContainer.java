@@ -1,42 +1,125 @@
 package game;
 
+import metrics.FlightRecording;
+import metrics.FrameRenderEvent;
+import metrics.GameMetrics;
+import metrics.TickEvent;
+
 import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
+import java.awt.image.VolatileImage;
 
 public class SnakeGameContainer extends JPanel
 {
-    private final Color BG_COLOUR = new Color(30, 30, 30);
-    private final Color FOOD_COLOUR = new Color(255, 44, 88);
-    private final Color TEXT_COLOUR = new Color(255, 255, 255);
-    private final Direction INITIAL_SNAKE_DIR = Direction.Right;
-    private final Font TEXT_FONT = new Font("Arial", Font.PLAIN, 24);
     private final boolean WALL_COLLISION = true;
-    private final int FOOD_POINTS_WORTH = 15;
-    private final int GAME_LOOP_SLEEP_MS = 75;
+    private final int INPUT_QUEUE_CAPACITY = 4;
+    private final int DEFAULT_FRAME_RATE = 60;
     private final int SNAKE_DIMENSIONS = 10;
-    private final int SNAKE_START_X = 3, SNAKE_START_Y = 1;
     private final int CONTAINER_HEIGHT = SNAKE_DIMENSIONS * 50, CONTAINER_WIDTH = SNAKE_DIMENSIONS * 75;
+    private final Rectangle CONTAINER_BOUNDS = new Rectangle(CONTAINER_WIDTH, CONTAINER_HEIGHT);
+    private final Rectangle DEBUG_HUD_BOUNDS = new Rectangle(5, 5, 360, 84);
+    private final Font DEBUG_HUD_FONT = new Font("Monospaced", Font.PLAIN, 12);
+    private final Color DEBUG_HUD_BG_COLOUR = new Color(0, 0, 0, 170);
+
+    private GameEventBus eventBus = new GameEventBus();
+    private GameEventPublisher eventPublisher = new GameEventPublisher();
+    private ReplayRecorder replayRecorder = new ReplayRecorder();
+    private volatile Replay lastReplay;
+    private volatile ReplayPlayer replayPlayer;
+    private double tickRate, replaySpeed = 1;
+    private InputQueue inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+    private Direction lastQueuedDirection;
+    private GameEngine engine;
+    private SnapshotExchange snapshotExchange = new SnapshotExchange();
+    private volatile GameState publishedState;
+    private volatile int publishedScore;
+    private long lastAppliedInputTimeNanos = 0, lastRenderedInputTimeNanos = 0;
+    private final GameMetrics metrics = new GameMetrics();
+    private volatile boolean debugHudVisible = false;
+    private GameLoop gameLoop, renderLoop;
+    private GameLoopListener gameLoopListener;
+    private RenderLoopListener renderLoopListener;
+    private volatile boolean gameStarted = false;
+    private volatile boolean activeRendering = false;
+    private final Object renderLock = new Object();
+    private BoardRenderer boardRenderer;
+    private OverlayTextCache overlayTextCache;
+    private VolatileImage backBuffer;
+    private GameState renderedState;
+    private boolean backBufferStale = true, moveSettled = false;
+
+    private class GameLoopListener implements GameLoopHandler
+    {
+        @Override
+        public boolean onTick()
+        {
+            return tick();
+        }
+
+        @Override
+        public void onFrame()
+        {
+            // Frames are drawn by the render loop at the display's refresh rate
+        }
+    }
+
+    private class RenderLoopListener implements GameLoopHandler
+    {
+        @Override
+        public boolean onTick()
+        {
+            return true;
+        }
 
-    private ArrayList<SnakeGameContainerListener> eventListenersList = new ArrayList<SnakeGameContainerListener>();
-    private Direction nextSnakeDirection = INITIAL_SNAKE_DIR, snakeDirection = nextSnakeDirection;
-    private Point foodLocation;
-    private Snake snake;
-    private boolean gamePaused = false, gameStarted = false, gameOver = false, gameWon = false, killLoopThread = false;
-    private int score = 0;
+        @Override
+        public void onFrame()
+        {
+            if (activeRendering)
+            {
+                renderActively();
+            }
+            else
+            {
+                updateBoardAndRepaint();
+            }
+        }
+    }
 
     public SnakeGameContainer()
     {
         super(true);
 
-        this.setBackground(BG_COLOUR);
+        engine = new GameEngine(WALL_COLLISION, SNAKE_DIMENSIONS, CONTAINER_HEIGHT, CONTAINER_WIDTH);
+        boardRenderer = new BoardRenderer(SNAKE_DIMENSIONS, CONTAINER_WIDTH, CONTAINER_HEIGHT, Theme.CLASSIC);
+        setTheme(Theme.CLASSIC);
+        boardRenderer.setInterpolation(true);
+        lastQueuedDirection = engine.getSnakeDirection();
+        gameLoop = new GameLoop("Snake Game Loop");
+        gameLoopListener = new GameLoopListener();
+        tickRate = gameLoop.getTickRate();
+        renderLoop = new GameLoop("Snake Render Loop");
+        renderLoopListener = new RenderLoopListener();
 
-        setupSnakeAndFood();
+        metrics.registerMBean();
+        publishSnapshot();
     }
 
     public int getScore()
     {
-        return score;
+        return publishedScore;
+    }
+
+    /**
+     * Must only be used from the thread that drives the engine, see HeadlessGame.
+     */
+    GameEngine getEngine()
+    {
+        return engine;
+    }
+
+    ReplayRecorder getReplayRecorder()
+    {
+        return replayRecorder;
     }
 
     @Override
@@ -47,12 +130,12 @@ public class SnakeGameContainer extends JPanel
 
     public boolean isGameOver()
     {
-        return gameOver;
+        return publishedState != GameState.Running;
     }
 
     public boolean isGamePaused()
     {
-        return gamePaused;
+        return gameLoop.isPaused();
     }
 
     public boolean isGameStarted()
@@ -60,54 +143,380 @@ public class SnakeGameContainer extends JPanel
         return gameStarted;
     }
 
+    public boolean hasWallCollision()
+    {
+        return engine.hasWallCollision();
+    }
+
+    /**
+     * Returns the width of the board in cells.
+     */
+    public int getBoardColumns()
+    {
+        return engine.getMapWidth() / engine.getCellSize();
+    }
+
+    /**
+     * Returns the height of the board in cells.
+     */
+    public int getBoardRows()
+    {
+        return engine.getMapHeight() / engine.getCellSize();
+    }
+
+    public double getTickRate()
+    {
+        return gameLoop.getTickRate();
+    }
+
+    /**
+     * Sets how many times per second the game advances, takes effect immediately unless a replay is playing.
+     */
+    public void setTickRate(double ticksPerSecond)
+    {
+        if (!GameLoop.isValidTickRate(ticksPerSecond))
+        {
+            throw new IllegalArgumentException("The tick rate must be positive and at most one tick per nanosecond.");
+        }
+
+        tickRate = ticksPerSecond;
+
+        if (replayPlayer == null)
+        {
+            gameLoop.setTickRate(ticksPerSecond);
+        }
+    }
+
+    /**
+     * Returns the number of ticks per second that the game loop actually managed over the last second.
+     */
+    public double getAchievedTickRate()
+    {
+        return gameLoop.getAchievedTickRate();
+    }
+
+    /**
+     * Returns the number of frames per second that the render loop actually managed over the last second.
+     */
+    public double getAchievedFrameRate()
+    {
+        return renderLoop.getAchievedTickRate();
+    }
+
+    public boolean isSmoothMovement()
+    {
+        synchronized (renderLock)
+        {
+            return boardRenderer.isInterpolation();
+        }
+    }
+
+    /**
+     * When enabled, frames drawn between two ticks show the snake part of the way into its next cell.
+     * This adds one tick of display latency since the last tick is only fully shown once the next one is in.
+     */
+    public void setSmoothMovement(boolean smooth)
+    {
+        synchronized (renderLock)
+        {
+            boardRenderer.setInterpolation(smooth);
+            backBufferStale = true;
+        }
+
+        this.repaint();
+    }
+
+    public Theme getTheme()
+    {
+        synchronized (renderLock)
+        {
+            return boardRenderer.getTheme();
+        }
+    }
+
+    public void setTheme(Theme theme)
+    {
+        synchronized (renderLock)
+        {
+            boardRenderer.setTheme(theme);
+            overlayTextCache = new OverlayTextCache(theme.getTextFont(), theme.getTextColour(), CONTAINER_BOUNDS);
+            backBufferStale = true;
+        }
+
+        this.setBackground(theme.getBgColour());
+        this.repaint();
+    }
+
+    public GameMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public boolean isDebugHudVisible()
+    {
+        return debugHudVisible;
+    }
+
+    /**
+     * Shows the latency histograms over the top left corner of the board, metrics are recorded while it's shown.
+     */
+    public void setDebugHudVisible(boolean visible)
+    {
+        debugHudVisible = visible;
+        metrics.setDisplayed(visible);
+
+        this.repaint();
+    }
+
+    public boolean isActiveRendering()
+    {
+        return activeRendering;
+    }
+
+    /**
+     * When enabled, the render loop thread draws each frame into a VolatileImage back buffer and copies it to
+     * the screen itself instead of asking the RepaintManager to repaint the container.
+     */
+    public void setActiveRendering(boolean active)
+    {
+        synchronized (renderLock)
+        {
+            activeRendering = active;
+            backBufferStale = true;
+        }
+
+        this.repaint();
+    }
+
     public void setPauseState(boolean pause)
     {
-        gamePaused = pause;
+        gameLoop.setPaused(pause);
+        renderLoop.setPaused(pause);
+
+        this.repaint();
+    }
+
+    /**
+     * Returns how long the last applied direction change waited between the key press and the snake moving.
+     */
+    public long getLastInputLatencyNanos()
+    {
+        return inputQueue.getLastInputLatencyNanos();
     }
 
+    /**
+     * Queues a direction change to be applied on one of the next ticks. Must be called from the event dispatch thread.
+     */
     public void setSnakeDirection(Direction dir)
     {
-        if (getOppositeDirection(dir).equals(snakeDirection) || gamePaused)
+        if (dir == lastQueuedDirection || dir.getOpposite() == lastQueuedDirection || isGamePaused())
         {
             return;
         }
 
-        nextSnakeDirection = dir;
+        if (inputQueue.offer(dir))
+        {
+            lastQueuedDirection = dir;
+        }
     }
 
+    /**
+     * Listeners are notified on the event dispatch thread, see GameEventBus.
+     */
     public void addEventListener(SnakeGameContainerListener scoreListener)
     {
-        eventListenersList.add(scoreListener);
+        eventBus.addListener(scoreListener);
     }
 
-    public void startGame()
+    public void removeEventListener(SnakeGameContainerListener scoreListener)
+    {
+        eventBus.removeListener(scoreListener);
+    }
+
+    /**
+     * Returns the stream of game events for consumers outside of Swing, see GameEventPublisher.
+     */
+    public GameEventPublisher getEventPublisher()
+    {
+        return eventPublisher;
+    }
+
+    /**
+     * Returns the replay of the last game that ended, or null if no game has ended yet.
+     */
+    public Replay getLastReplay()
+    {
+        return lastReplay;
+    }
+
+    /**
+     * Returns true while a replay is being shown rather than a game being played.
+     */
+    public boolean isReplaying()
+    {
+        return replayPlayer != null;
+    }
+
+    public double getReplaySpeed()
+    {
+        return replaySpeed;
+    }
+
+    /**
+     * Sets how many times faster than it was recorded a replay is played back, takes effect immediately.
+     */
+    public void setReplaySpeed(double speed)
     {
-        if (gameOver)
+        if (!(speed > 0) || Double.isInfinite(speed))
         {
-            setupSnakeAndFood();
+            throw new IllegalArgumentException("The replay speed must be positive.");
         }
 
+        replaySpeed = speed;
+
+        if (replayPlayer != null)
+        {
+            gameLoop.setTickRate(replayPlayer.getReplay().getTickRate() * speed);
+        }
+    }
+
+    /**
+     * Abandons the current game, shuts down the game and render loop threads and completes the game event
+     * subscriptions. The container can't be used afterwards.
+     */
+    public void shutdown()
+    {
+        gameLoop.shutdown();
+        renderLoop.shutdown();
+
+        replayRecorder.discard();
+        eventPublisher.close();
+    }
+
+    /**
+     * Abandons the current game and plays the replay back at the replay speed, key presses are ignored until
+     * a new game is started. A replay that can't be played here is rejected before the current game is touched.
+     */
+    public void playReplay(Replay replay)
+    {
+        double replayTickRate = replay.getTickRate() * replaySpeed;
+
+        // Checked up front rather than left to ReplayPlayer, which resets the engine the game loop is still ticking
+        if (!replay.isPlayableOn(engine))
+        {
+            throw new IllegalArgumentException("The replay was recorded with different board settings.");
+        }
+
+        if (!GameLoop.isValidTickRate(replayTickRate))
+        {
+            throw new IllegalArgumentException("The replay can't be played at " + replayTickRate + " ticks per second.");
+        }
+
+        gameLoop.stopAndAwait();
+        renderLoop.stopAndAwait();
+
+        ReplayPlayer player = new ReplayPlayer(replay, engine);
+
+        // The abandoned game isn't kept, it would otherwise replace the replay being watched as the last replay
+        replayRecorder.discard();
+        publishSnapshot();
         resetScore();
         resetVariables();
 
+        replayPlayer = player;
         gameStarted = true;
 
-        new Thread(() ->
+        gameLoop.setTickRate(replayTickRate);
+        gameLoop.start(gameLoopListener);
+        renderLoop.setTickRate(getDisplayRefreshRate());
+        renderLoop.start(renderLoopListener);
+
+        eventBus.post(GameEventBus.GAME_STARTED);
+        publishGameEvent(GameEventType.GameStarted);
+    }
+
+    /**
+     * Simulates the rest of the replay that is playing without drawing it and shows how it ended.
+     */
+    public void skipReplayToEnd()
+    {
+        gameLoop.stopAndAwait();
+        renderLoop.stopAndAwait();
+
+        ReplayPlayer player = replayPlayer;
+
+        if (player == null || !gameStarted)
         {
-            gameLoop();
-        }).start();
+            return;
+        }
+
+        player.fastForwardToEnd();
+        publishSnapshot();
+        notifyScoreUpdated();
 
-        for (SnakeGameContainerListener listener : eventListenersList)
+        if (engine.getState() == GameState.Lost)
         {
-            listener.onGameStarted();
+            gameOver();
+        }
+        else if (engine.getState() == GameState.Won)
+        {
+            winGame();
+        }
+        else
+        {
+            gameStarted = false;
+            stopRendering();
         }
     }
 
+    public void startGame()
+    {
+        prepareGame();
+
+        gameLoop.setTickRate(tickRate);
+        gameLoop.start(gameLoopListener);
+        renderLoop.setTickRate(getDisplayRefreshRate());
+        renderLoop.start(renderLoopListener);
+
+        eventBus.post(GameEventBus.GAME_STARTED);
+        publishGameEvent(GameEventType.GameStarted);
+    }
+
+    /**
+     * Stops both loops and sets up a game to be played and recorded, without starting the loops that play it.
+     * HeadlessGame plays such a game by calling tick() itself.
+     */
+    void prepareGame()
+    {
+        gameLoop.stopAndAwait();
+        renderLoop.stopAndAwait();
+
+        if (isGameOver() || replayPlayer != null)
+        {
+            engine.reset();
+            publishSnapshot();
+        }
+
+        resetScore();
+        resetVariables();
+
+        replayPlayer = null;
+        replayRecorder.start(engine, tickRate);
+        gameStarted = true;
+    }
+
     public void startNewGame()
     {
-        killLoopThread = true;
+        gameLoop.stopAndAwait();
+        renderLoop.stopAndAwait();
 
-        setupSnakeAndFood();
+        // A game that ended was already kept as the last replay, one abandoned halfway through isn't kept at all
+        replayRecorder.discard();
+        replayPlayer = null;
+        gameLoop.setTickRate(tickRate);
+
+        engine.reset();
+        publishSnapshot();
         resetScore();
         resetVariables();
 
@@ -119,219 +528,526 @@ public class SnakeGameContainer extends JPanel
      */
     private void resetVariables()
     {
-        nextSnakeDirection = INITIAL_SNAKE_DIR;
-        snakeDirection = nextSnakeDirection;
-        gameOver = false;
-        gamePaused = false;
+        // The game loop is the input queue's consumer, clearing the queue while it polls would race with it
+        if (gameLoop.isRunning())
+        {
+            throw new IllegalStateException("The input queue can only be cleared while the game loop is stopped.");
+        }
+
+        inputQueue.clear();
+        lastQueuedDirection = engine.getSnakeDirection();
         gameStarted = false;
-        gameWon = false;
-        killLoopThread = false;
+
+        gameLoop.setPaused(false);
+        renderLoop.setPaused(false);
     }
 
-    private void setupSnakeAndFood()
+    /**
+     * Advances the game by one tick, returns false once the game has ended. Runs on the game loop, or on the
+     * thread driving a HeadlessGame.
+     */
+    boolean tick()
     {
-        // Create a new snake with a length of three
-        snake = new Snake(new Point(SNAKE_START_X, SNAKE_START_Y), WALL_COLLISION, SNAKE_DIMENSIONS, CONTAINER_HEIGHT, CONTAINER_WIDTH);
-        snake.addBodyPart(Direction.Left);
-        snake.addBodyPart(Direction.Left);
+        boolean recordMetrics = metrics.isEnabled();
+        long tickStartTime = recordMetrics ? System.nanoTime() : 0;
 
-        generateFood();
-    }
+        TickEvent tickEvent = FlightRecording.isActive() ? new TickEvent() : null;
 
-    private void gameLoop()
-    {
-        while (!killLoopThread && !gameOver && !gameWon)
+        if (tickEvent != null)
         {
-            if (!gamePaused)
-            {
-                try
-                {
-                    CollisionType collisionTypeAfterMoving = snake.move(snakeDirection);
-                    if (collisionTypeAfterMoving != CollisionType.None) // Either collided with a wall (if there are no walls) or one of its body parts
-                    {
-                        gameOver();
-
-                        break;
-                    }
+            tickEvent.begin();
+        }
 
-                    handleFoodCollision();
+        ReplayPlayer player = replayPlayer;
+        Direction dir = null;
+        StepResult result;
 
-                    snakeDirection = nextSnakeDirection;
+        if (player != null)
+        {
+            result = player.step();
+        }
+        else
+        {
+            dir = inputQueue.poll();
+            result = engine.step(dir);
 
-                    Thread.sleep(GAME_LOOP_SLEEP_MS);
-                }
-                catch (InterruptedException ex)
-                {
-                    System.out.println("Exception thrown in game loop: " + ex.toString());
-                }
+            if (dir != null)
+            {
+                inputQueue.markLastPolledApplied();
+                lastAppliedInputTimeNanos = inputQueue.getLastPolledEnqueueTime();
             }
 
-            this.repaint();
+            if (result != StepResult.Ignored)
+            {
+                replayRecorder.record(engine.getSnakeDirection());
+            }
         }
-    }
 
-    private void handleFoodCollision()
-    {
-        if (snake.getBodyPartsList().get(0).equals(foodLocation))
+        publishSnapshot();
+
+        publishGameEvent(GameEventType.Tick);
+
+        if (result == StepResult.Moved || result == StepResult.FoodEaten || result == StepResult.Won)
         {
-            addPointsToScore();
+            publishGameEvent(GameEventType.Move);
+        }
 
-            snake.addBodyPart(snake.getTailLastLocation());
+        if (result == StepResult.FoodEaten || result == StepResult.Won)
+        {
+            publishGameEvent(GameEventType.Eat);
+        }
 
-            generateFood();
+        if (recordMetrics)
+        {
+            metrics.recordTickDuration(System.nanoTime() - tickStartTime);
+            metrics.recordTickJitter(gameLoop.getTickLatenessNanos());
         }
-    }
 
-    private void generateFood()
-    {
-        ArrayList<Point> map = getEmptyMapPoints();
+        if (tickEvent != null && tickEvent.shouldCommit())
+        {
+            tickEvent.tick = engine.getTickCount();
+            tickEvent.result = result.toString();
+            tickEvent.inputApplied = dir != null;
+            tickEvent.snakeLength = engine.getSnake().getLength();
+            tickEvent.score = engine.getScore();
+            tickEvent.commit();
+        }
 
-        if (map.size() == 0)
+        if (result == StepResult.Collided)
+        {
+            gameOver();
+        }
+        else if (result == StepResult.FoodEaten)
         {
+            notifyScoreUpdated();
+        }
+        else if (result == StepResult.Won)
+        {
+            notifyScoreUpdated();
             winGame();
         }
-        else
+        else if (result == StepResult.Ignored && player != null) // The replay ended before the game did
         {
-            int randIndex = (int)(Math.random() * map.size());
-            foodLocation = map.get(randIndex);
+            gameStarted = false;
+            stopRendering();
         }
+
+        return engine.getState() == GameState.Running && result != StepResult.Ignored;
     }
 
-    private ArrayList<Point> getEmptyMapPoints()
+    /**
+     * Hands a copy of the engine's state over to the renderer, must be called from the thread that drives the engine.
+     */
+    private void publishSnapshot()
     {
-        ArrayList<Point> result = new ArrayList<Point>();
+        publishedScore = engine.getScore();
+        publishedState = engine.getState();
+
+        snapshotExchange.publish(engine, lastAppliedInputTimeNanos);
+    }
 
-        Point mapPoint;
-        for (int row = 0; row < CONTAINER_HEIGHT / SNAKE_DIMENSIONS; row++)
+    private int getDisplayRefreshRate()
+    {
+        GraphicsConfiguration graphicsConfig = this.getGraphicsConfiguration();
+
+        if (graphicsConfig != null)
         {
-            for (int col = 0; col < CONTAINER_WIDTH/ SNAKE_DIMENSIONS; col++)
-            {
-                mapPoint = new Point(col, row);
+            int refreshRate = graphicsConfig.getDevice().getDisplayMode().getRefreshRate();
 
-                if (!snake.getBodyPartsList().contains(mapPoint))
-                {
-                    result.add(mapPoint);
-                }
+            if (refreshRate != DisplayMode.REFRESH_RATE_UNKNOWN)
+            {
+                return refreshRate;
             }
         }
 
-        return result;
+        return DEFAULT_FRAME_RATE;
     }
 
-    private Direction getOppositeDirection(Direction dir)
+    /**
+     * Stops the render loop once the game has ended and lets Swing draw the final frame.
+     */
+    private void stopRendering()
     {
-        Direction oppDir;
+        renderLoop.stop();
 
-        if (dir == Direction.Down)
-        {
-            oppDir = Direction.Up;
-        }
-        else if (dir == Direction.Right)
-        {
-            oppDir = Direction.Left;
-        }
-        else if (dir == Direction.Left)
-        {
-            oppDir = Direction.Right;
-        }
-        else
+        this.repaint();
+    }
+
+    /**
+     * Keeps the replay of the game being recorded, if any, as the last replay.
+     */
+    private void finishRecording()
+    {
+        Replay replay = replayRecorder.finish();
+
+        if (replay != null)
         {
-            oppDir = Direction.Down;
+            lastReplay = replay;
         }
-
-        return oppDir;
     }
 
     private void winGame()
     {
         gameStarted = false;
-        gameOver = true;
-        gameWon = true;
+        finishRecording();
+        stopRendering();
 
-        for (SnakeGameContainerListener listener : eventListenersList)
-        {
-            listener.onGameWon();
-        }
+        eventBus.post(GameEventBus.GAME_WON);
+        publishGameEvent(GameEventType.GameWon);
     }
 
     private void gameOver()
     {
-        gameOver = true;
         gameStarted = false;
+        finishRecording();
+        stopRendering();
+
+        eventBus.post(GameEventBus.GAME_OVER);
+        publishGameEvent(GameEventType.GameOver);
+    }
+
+    private void resetScore()
+    {
+        notifyScoreUpdated();
+    }
 
-        for (SnakeGameContainerListener listener : eventListenersList)
+    private void notifyScoreUpdated()
+    {
+        eventBus.post(GameEventBus.SCORE_UPDATED);
+        publishGameEvent(GameEventType.ScoreUpdated);
+    }
+
+    private void publishGameEvent(GameEventType type)
+    {
+        if (eventPublisher.hasSubscribers())
         {
-            listener.onGameOver();
+            Snake snake = engine.getSnake();
+
+            eventPublisher.publish(new GameEvent(type, engine.getTickCount(), engine.getScore(), snake.getLength(), snake.getHeadCell(), engine.getSnakeDirection()));
         }
     }
 
-    private void addPointsToScore()
+    @Override
+    public void paintComponent(Graphics g)
     {
-        score += FOOD_POINTS_WORTH;
+        super.paintComponent(g);
 
-        for (SnakeGameContainerListener listener : eventListenersList)
+        synchronized (renderLock)
         {
-            listener.onScoreUpdated();
+            long renderStartTime = metrics.isEnabled() ? System.nanoTime() : 0;
+
+            FrameRenderEvent frameRenderEvent = FlightRecording.isActive() ? new FrameRenderEvent() : null;
+
+            if (frameRenderEvent != null)
+            {
+                frameRenderEvent.begin();
+            }
+
+            // A snapshot that arrived since the last frame may have changed cells outside of the clip area
+            if (updateBoard())
+            {
+                repaintDirtyRegions();
+            }
+
+            g.drawImage(boardRenderer.getBoardImage(), 0, 0, null);
+            boardRenderer.drawInterpolatedMove((Graphics2D)g, getMoveProgress());
+            drawOverlay((Graphics2D)g);
+            drawDebugHud((Graphics2D)g);
+
+            backBufferStale = true;
+
+            if (renderStartTime != 0)
+            {
+                metrics.recordRenderTime(System.nanoTime() - renderStartTime);
+            }
+
+            if (frameRenderEvent != null && frameRenderEvent.shouldCommit())
+            {
+                frameRenderEvent.activeRendering = false;
+                frameRenderEvent.fullFrame = g.getClipBounds() == null || g.getClipBounds().contains(CONTAINER_BOUNDS);
+                frameRenderEvent.dirtyCellCount = boardRenderer.getDirtyCellCount();
+                frameRenderEvent.commit();
+            }
         }
     }
 
-    private void resetScore()
+    /**
+     * Brings the board image up to date with the latest snapshot, the caller must hold renderLock.
+     */
+    private boolean updateBoard()
     {
-        score = 0;
+        RenderSnapshot snapshot = snapshotExchange.acquireLatest();
+        renderedState = snapshot.getState();
+
+        boolean boardChanged = boardRenderer.update(snapshot, this.getGraphicsConfiguration());
 
-        for (SnakeGameContainerListener listener : eventListenersList)
+        if (boardChanged)
         {
-            listener.onScoreUpdated();
+            moveSettled = false;
         }
+
+        if (snapshot.getInputTimeNanos() != lastRenderedInputTimeNanos)
+        {
+            lastRenderedInputTimeNanos = snapshot.getInputTimeNanos();
+
+            if (lastRenderedInputTimeNanos != 0 && metrics.isEnabled())
+            {
+                metrics.recordInputToRenderLatency(System.nanoTime() - lastRenderedInputTimeNanos);
+            }
+        }
+
+        return boardChanged;
     }
 
-    public void drawCenteredString(Graphics g, String text, Rectangle rect, Font font)
+    /**
+     * Returns how far the snake has got between the board image and the latest snapshot, from 0 to 1.
+     */
+    private double getMoveProgress()
     {
-        FontMetrics metrics = g.getFontMetrics(font);
+        return (double)(System.nanoTime() - boardRenderer.getPendingPublishTimeNanos()) / gameLoop.getTickPeriodNanos();
+    }
 
-        int x = rect.x + (rect.width - metrics.stringWidth(text)) / 2;
-        int y = rect.y + ((rect.height - metrics.getHeight()) / 2) + metrics.getAscent();
+    /**
+     * Returns true if the next frame would look different from the last one, the caller must hold renderLock.
+     */
+    private boolean updateFrame()
+    {
+        boolean boardChanged = updateBoard();
 
-        g.setFont(font);
-        g.drawString(text, x, y);
+        if (boardRenderer.hasPendingMove() && !moveSettled)
+        {
+            boardRenderer.markInterpolatedCellsDirty();
+
+            // Once the move has been drawn in full there is nothing left to animate until the next snapshot
+            moveSettled = getMoveProgress() >= 1;
+
+            return true;
+        }
+
+        // The debug HUD shows live numbers, so it has to be redrawn every frame
+        return boardChanged || debugHudVisible;
     }
 
-    @Override
-    public void paintComponent(Graphics g)
+    /**
+     * Asks Swing to repaint only the cells that changed since the last frame.
+     */
+    private void updateBoardAndRepaint()
     {
-        super.paintComponent(g);
+        synchronized (renderLock)
+        {
+            if (updateFrame())
+            {
+                repaintDirtyRegions();
+            }
+        }
+    }
 
-        Graphics2D g2d = (Graphics2D)g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    private void repaintDirtyRegions()
+    {
+        if (boardRenderer.wasFullyRedrawn() || getOverlayMessage() != null)
+        {
+            this.repaint();
 
-        g2d.setColor(FOOD_COLOUR);
-        g2d.fillRect(foodLocation.x * SNAKE_DIMENSIONS, foodLocation.y * SNAKE_DIMENSIONS, SNAKE_DIMENSIONS, SNAKE_DIMENSIONS);
+            return;
+        }
+
+        if (debugHudVisible)
+        {
+            this.repaint(DEBUG_HUD_BOUNDS);
+        }
 
-        g2d.setColor(Snake.SNAKE_COLOUR);
-        for (int i = 0; i < snake.getBodyPartsList().size(); i++)
+        for (int i = 0; i < boardRenderer.getDirtyCellCount(); i++)
         {
-            Point bodyPartLoc = snake.getBodyPartsList().get(i);
+            Rectangle cellBounds = boardRenderer.getDirtyCellBounds(i);
+
+            this.repaint(cellBounds.x, cellBounds.y, cellBounds.width, cellBounds.height);
+        }
+    }
+
+    /**
+     * Brings the back buffer up to date and presents it straight away from the calling thread. Only the cells
+     * that changed are copied unless the back buffer was lost or the whole board had to be redrawn.
+     */
+    private void renderActively()
+    {
+        GraphicsConfiguration graphicsConfig = this.getGraphicsConfiguration();
+
+        if (graphicsConfig == null || !this.isShowing())
+        {
+            return;
+        }
+
+        synchronized (renderLock)
+        {
+            if (!updateFrame() && !backBufferStale)
+            {
+                return;
+            }
+
+            long renderStartTime = metrics.isEnabled() ? System.nanoTime() : 0;
+            boolean fullFrame;
+
+            FrameRenderEvent frameRenderEvent = FlightRecording.isActive() ? new FrameRenderEvent() : null;
+
+            if (frameRenderEvent != null)
+            {
+                frameRenderEvent.begin();
+            }
+
+            double moveProgress = getMoveProgress();
+
+            do
+            {
+                int validationResult = backBuffer == null ? VolatileImage.IMAGE_INCOMPATIBLE : backBuffer.validate(graphicsConfig);
+
+                if (validationResult == VolatileImage.IMAGE_INCOMPATIBLE)
+                {
+                    backBuffer = this.createVolatileImage(CONTAINER_WIDTH, CONTAINER_HEIGHT);
+                }
+
+                if (validationResult != VolatileImage.IMAGE_OK)
+                {
+                    backBufferStale = true;
+                }
+
+                fullFrame = backBufferStale || boardRenderer.wasFullyRedrawn() || getOverlayMessage() != null;
+                Graphics2D backBufferGraphics = backBuffer.createGraphics();
+                Graphics screenGraphics = this.getGraphics();
+
+                if (fullFrame)
+                {
+                    backBufferGraphics.drawImage(boardRenderer.getBoardImage(), 0, 0, null);
+                    boardRenderer.drawInterpolatedMove(backBufferGraphics, moveProgress);
+                    drawOverlay(backBufferGraphics);
+                    drawDebugHud(backBufferGraphics);
+
+                    if (screenGraphics != null)
+                    {
+                        screenGraphics.drawImage(backBuffer, 0, 0, null);
+                    }
+                }
+                else
+                {
+                    for (int i = 0; i < boardRenderer.getDirtyCellCount(); i++)
+                    {
+                        Rectangle r = boardRenderer.getDirtyCellBounds(i);
+
+                        backBufferGraphics.drawImage(boardRenderer.getBoardImage(), r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+                    }
+
+                    if (debugHudVisible)
+                    {
+                        Rectangle r = DEBUG_HUD_BOUNDS;
+
+                        backBufferGraphics.drawImage(boardRenderer.getBoardImage(), r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+                    }
+
+                    boardRenderer.drawInterpolatedMove(backBufferGraphics, moveProgress);
+                    drawDebugHud(backBufferGraphics);
+
+                    for (int i = 0; i < boardRenderer.getDirtyCellCount() && screenGraphics != null; i++)
+                    {
+                        Rectangle r = boardRenderer.getDirtyCellBounds(i);
 
-            g2d.fillRect(bodyPartLoc.x * SNAKE_DIMENSIONS, bodyPartLoc.y * SNAKE_DIMENSIONS, SNAKE_DIMENSIONS, SNAKE_DIMENSIONS);
+                        screenGraphics.drawImage(backBuffer, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+                    }
+
+                    if (debugHudVisible && screenGraphics != null)
+                    {
+                        Rectangle r = DEBUG_HUD_BOUNDS;
+
+                        screenGraphics.drawImage(backBuffer, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+                    }
+                }
+
+                backBufferGraphics.dispose();
+
+                if (screenGraphics != null)
+                {
+                    screenGraphics.dispose();
+                }
+
+                backBufferStale = false;
+            }
+            while (backBuffer.contentsLost());
+
+            if (renderStartTime != 0)
+            {
+                metrics.recordRenderTime(System.nanoTime() - renderStartTime);
+            }
+
+            if (frameRenderEvent != null && frameRenderEvent.shouldCommit())
+            {
+                frameRenderEvent.activeRendering = true;
+                frameRenderEvent.fullFrame = fullFrame;
+                frameRenderEvent.dirtyCellCount = boardRenderer.getDirtyCellCount();
+                frameRenderEvent.commit();
+            }
         }
 
-        g2d.setColor(TEXT_COLOUR);
+        Toolkit.getDefaultToolkit().sync();
+    }
 
-        if (gameWon)
+    /**
+     * Returns the message to draw over the board, or null if there is none, the caller must hold renderLock.
+     */
+    private String getOverlayMessage()
+    {
+        if (renderedState == GameState.Won)
         {
-            drawCenteredString(g2d, "You win!", this.getBounds(), TEXT_FONT);
+            return "You win!";
         }
-        else if (gameOver && !gameStarted)
+        else if (renderedState == GameState.Lost && !gameStarted)
         {
-            drawCenteredString(g2d, "Game over! Press the Spacebar to start a new game!", this.getBounds(), TEXT_FONT);
+            return "Game over! Press the Spacebar to start a new game!";
         }
         else if (!gameStarted)
         {
-            drawCenteredString(g2d, "Press the Spacebar to start the game!", this.getBounds(), TEXT_FONT);
+            return "Press the Spacebar to start the game!";
+        }
+        else if (isGamePaused())
+        {
+            return "Game paused. Press P to unpause.";
         }
-        else if (gamePaused)
+
+        return null;
+    }
+
+    private void drawOverlay(Graphics2D g2d)
+    {
+        String message = getOverlayMessage();
+
+        if (message != null)
+        {
+            overlayTextCache.draw(g2d, message);
+        }
+    }
+
+    private void drawDebugHud(Graphics2D g2d)
+    {
+        if (!debugHudVisible)
+        {
+            return;
+        }
+
+        String[] lines = {
+            String.format("Ticks/s %6.1f   Frames/s %6.1f", getAchievedTickRate(), getAchievedFrameRate()),
+            "Tick    " + metrics.getTickDuration(),
+            "Jitter  " + metrics.getTickJitter(),
+            "Render  " + metrics.getRenderTime(),
+            "Input   " + metrics.getInputToRenderLatency()
+        };
+
+        g2d.setColor(DEBUG_HUD_BG_COLOUR);
+        g2d.fill(DEBUG_HUD_BOUNDS);
+
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(DEBUG_HUD_FONT);
+        g2d.setColor(boardRenderer.getTheme().getTextColour());
+
+        for (int i = 0; i < lines.length; i++)
         {
-            drawCenteredString(g2d, "Game paused. Press P to unpause.", this.getBounds(), TEXT_FONT);
+            g2d.drawString(lines[i], DEBUG_HUD_BOUNDS.x + 6, DEBUG_HUD_BOUNDS.y + 16 * (i + 1));
         }
     }
 }
@@ -0,0 +1,40 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Triple buffer handing render snapshots from the game loop (the writer) to the renderer (the reader).
+ * The writer fills its own back snapshot and swaps it with the shared one, the reader swaps its front
+ * snapshot with the shared one when a newer snapshot is there. Neither side ever blocks or sees a snapshot
+ * that is still being written, and snapshots are recycled so publishing doesn't allocate.
+ */
+public class SnapshotExchange
+{
+    private final AtomicReference<RenderSnapshot> sharedSnapshot = new AtomicReference<RenderSnapshot>(new RenderSnapshot());
+    private RenderSnapshot backSnapshot = new RenderSnapshot(), frontSnapshot = new RenderSnapshot();
+    private long nextSequence = 0;
+
+    /**
+     * Writer side, copies the current state of the engine into a snapshot and makes it the latest one,
+     * along with when the last key press applied to the engine was queued. Only one thread may publish at a time.
+     */
+    public void publish(GameEngine engine, long inputTimeNanos)
+    {
+        backSnapshot.update(engine, nextSequence++, inputTimeNanos);
+        backSnapshot = sharedSnapshot.getAndSet(backSnapshot);
+    }
+
+    /**
+     * Reader side, returns the latest published snapshot. The returned snapshot stays valid until the next
+     * call to this method. Only one thread may read at a time.
+     */
+    public RenderSnapshot acquireLatest()
+    {
+        if (sharedSnapshot.get().getSequence() > frontSnapshot.getSequence())
+        {
+            frontSnapshot = sharedSnapshot.getAndSet(frontSnapshot);
+        }
+
+        return frontSnapshot;
+    }
+}
@@ -0,0 +1,9 @@
+package game;
+
+public enum StepResult {
+    Moved,
+    FoodEaten,
+    Collided,
+    Won,
+    Ignored
+}
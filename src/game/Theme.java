@@ -0,0 +1,80 @@
+package game;
+
+import java.awt.*;
+
+/**
+ * The colours and font used to draw the game. The snake, food and background tiles are pre-rendered from
+ * a theme once into a TileAtlas, so a theme can be as detailed as needed without slowing down frames.
+ */
+public class Theme
+{
+    public static final Theme CLASSIC = new Theme("Classic", new Color(30, 30, 30), new Color(255, 44, 88), Snake.SNAKE_COLOUR, new Color(40, 170, 40), new Color(20, 20, 20), new Color(255, 255, 255), new Font("Arial", Font.PLAIN, 24));
+    public static final Theme RETRO = new Theme("Retro", new Color(155, 188, 15), new Color(48, 98, 48), new Color(15, 56, 15), new Color(15, 56, 15), new Color(155, 188, 15), new Color(15, 56, 15), new Font("Monospaced", Font.BOLD, 22));
+    public static final Theme OCEAN = new Theme("Ocean", new Color(12, 35, 64), new Color(255, 200, 60), new Color(64, 196, 255), new Color(30, 136, 229), new Color(255, 255, 255), new Color(225, 245, 254), new Font("Arial", Font.BOLD, 24));
+
+    private static final Theme[] THEMES = { CLASSIC, RETRO, OCEAN };
+
+    private final String name;
+    private final Color bgColour, foodColour, snakeColour, headColour, eyeColour, textColour;
+    private final Font textFont;
+
+    public Theme(String name, Color bgColour, Color foodColour, Color snakeColour, Color headColour, Color eyeColour, Color textColour, Font textFont)
+    {
+        this.name = name;
+        this.bgColour = bgColour;
+        this.foodColour = foodColour;
+        this.snakeColour = snakeColour;
+        this.headColour = headColour;
+        this.eyeColour = eyeColour;
+        this.textColour = textColour;
+        this.textFont = textFont;
+    }
+
+    /**
+     * Returns the built-in themes, the first one is the default.
+     */
+    public static Theme[] getThemes()
+    {
+        return THEMES.clone();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public Color getBgColour()
+    {
+        return bgColour;
+    }
+
+    public Color getFoodColour()
+    {
+        return foodColour;
+    }
+
+    public Color getSnakeColour()
+    {
+        return snakeColour;
+    }
+
+    public Color getHeadColour()
+    {
+        return headColour;
+    }
+
+    public Color getEyeColour()
+    {
+        return eyeColour;
+    }
+
+    public Color getTextColour()
+    {
+        return textColour;
+    }
+
+    public Font getTextFont()
+    {
+        return textFont;
+    }
+}
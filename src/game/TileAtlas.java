@@ -0,0 +1,133 @@
+package game;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-renders every tile of a theme side by side into one image that is compatible with the screen, so
+ * drawing a tile is a single image copy however detailed the tile is. The head and tail tiles come in one
+ * version per direction, the direction being the one the snake is moving in.
+ */
+public class TileAtlas
+{
+    public static final int BACKGROUND_TILE = 0, FOOD_TILE = 1, BODY_TILE = 2;
+    private static final int HEAD_TILES = 3, TAIL_TILES = HEAD_TILES + 4, TILE_COUNT = TAIL_TILES + 4;
+
+    private final Theme theme;
+    private final int cellSize;
+    private final BufferedImage atlasImage;
+
+    public TileAtlas(Theme theme, int cellSize, GraphicsConfiguration graphicsConfig)
+    {
+        this.theme = theme;
+        this.cellSize = cellSize;
+        this.atlasImage = graphicsConfig != null
+            ? graphicsConfig.createCompatibleImage(cellSize * TILE_COUNT, cellSize)
+            : new BufferedImage(cellSize * TILE_COUNT, cellSize, BufferedImage.TYPE_INT_RGB);
+
+        renderTiles();
+    }
+
+    public static int getHeadTile(Direction dir)
+    {
+        return HEAD_TILES + dir.ordinal();
+    }
+
+    public static int getTailTile(Direction dir)
+    {
+        return TAIL_TILES + dir.ordinal();
+    }
+
+    public Theme getTheme()
+    {
+        return theme;
+    }
+
+    public void drawTile(Graphics g, int tile, int x, int y)
+    {
+        int tileX = tile * cellSize;
+
+        g.drawImage(atlasImage, x, y, x + cellSize, y + cellSize, tileX, 0, tileX + cellSize, cellSize, null);
+    }
+
+    private void renderTiles()
+    {
+        Graphics2D g2d = atlasImage.createGraphics();
+
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(theme.getBgColour());
+        g2d.fillRect(0, 0, atlasImage.getWidth(), atlasImage.getHeight());
+
+        g2d.setColor(theme.getFoodColour());
+        g2d.fillOval(FOOD_TILE * cellSize + 1, 1, cellSize - 2, cellSize - 2);
+
+        g2d.setColor(theme.getSnakeColour());
+        g2d.fillRect(BODY_TILE * cellSize, 0, cellSize, cellSize);
+
+        for (Direction dir : Direction.values())
+        {
+            renderHeadTile(createTileGraphics(g2d, getHeadTile(dir), dir));
+            renderTailTile(createTileGraphics(g2d, getTailTile(dir), dir));
+        }
+
+        g2d.dispose();
+    }
+
+    /**
+     * Returns graphics for drawing a tile as if it was facing right, rotated to face the given direction.
+     */
+    private Graphics2D createTileGraphics(Graphics2D g2d, int tile, Direction dir)
+    {
+        Graphics2D tileGraphics = (Graphics2D)g2d.create(tile * cellSize, 0, cellSize, cellSize);
+        double centre = cellSize / 2.0;
+
+        tileGraphics.transform(AffineTransform.getQuadrantRotateInstance(getQuadrants(dir), centre, centre));
+
+        return tileGraphics;
+    }
+
+    private int getQuadrants(Direction dir)
+    {
+        switch (dir)
+        {
+            case Down:
+                return 1;
+            case Left:
+                return 2;
+            case Up:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    private void renderHeadTile(Graphics2D g2d)
+    {
+        int eyeSize = Math.max(2, cellSize / 5);
+
+        g2d.setColor(theme.getHeadColour());
+        g2d.fillRect(0, 0, cellSize / 2, cellSize);
+        g2d.fillOval(0, 0, cellSize, cellSize);
+
+        g2d.setColor(theme.getEyeColour());
+        g2d.fillOval(cellSize * 3 / 5, cellSize / 4 - eyeSize / 2, eyeSize, eyeSize);
+        g2d.fillOval(cellSize * 3 / 5, cellSize * 3 / 4 - eyeSize / 2, eyeSize, eyeSize);
+
+        g2d.dispose();
+    }
+
+    /**
+     * The tail narrows towards its back, which faces away from the rest of the body.
+     */
+    private void renderTailTile(Graphics2D g2d)
+    {
+        int[] xPoints = { 0, cellSize, cellSize, 0 };
+        int[] yPoints = { cellSize * 3 / 10, 0, cellSize, cellSize * 7 / 10 };
+
+        g2d.setColor(theme.getSnakeColour());
+        g2d.fillPolygon(xPoints, yPoints, xPoints.length);
+
+        g2d.dispose();
+    }
+}
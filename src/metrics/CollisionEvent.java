@@ -0,0 +1,26 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("snake.Collision")
+@Label("Collision")
+@Category({ "Snake", "Game Loop" })
+@Description("The snake ran into a wall or into itself, ending the game")
+public class CollisionEvent extends Event
+{
+    @Label("Collision Type")
+    public String collisionType;
+
+    @Label("Tick")
+    public long tick;
+
+    @Label("Snake Length")
+    public int snakeLength;
+
+    @Label("Score")
+    public int score;
+}
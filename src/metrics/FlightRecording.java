@@ -0,0 +1,57 @@
+package metrics;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Tracks whether a flight recording is running, so that hot paths can skip creating JFR events altogether
+ * instead of relying on the JIT to remove the allocations of events that are never committed.
+ */
+public final class FlightRecording
+{
+    private static volatile boolean active = false;
+
+    static
+    {
+        FlightRecorder.addListener(new FlightRecorderListener()
+        {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder)
+            {
+                updateActive(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(Recording recording)
+            {
+                updateActive(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    private FlightRecording()
+    {
+    }
+
+    /**
+     * Returns true while at least one recording is running, events should only be created when it does.
+     */
+    public static boolean isActive()
+    {
+        return active;
+    }
+
+    private static void updateActive(FlightRecorder recorder)
+    {
+        boolean running = false;
+
+        for (Recording recording : recorder.getRecordings())
+        {
+            running |= recording.getState() == RecordingState.RUNNING;
+        }
+
+        active = running;
+    }
+}
@@ -0,0 +1,20 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("snake.FoodSpawn")
+@Label("Food Spawn")
+@Category({ "Snake", "Game Loop" })
+@Description("Food was placed on a random free cell")
+public class FoodSpawnEvent extends Event
+{
+    @Label("Cell")
+    public int cell;
+
+    @Label("Free Cell Count")
+    public int freeCellCount;
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("snake.FrameRender")
+@Label("Frame Render")
+@Category({ "Snake", "Rendering" })
+@Description("One frame was drawn, either by Swing or by the render loop when active rendering is on")
+public class FrameRenderEvent extends Event
+{
+    @Label("Active Rendering")
+    public boolean activeRendering;
+
+    @Label("Full Frame")
+    @Description("Whether the whole board was drawn rather than only the dirty cells")
+    public boolean fullFrame;
+
+    @Label("Dirty Cell Count")
+    public int dirtyCellCount;
+}
@@ -0,0 +1,137 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Latency histograms of the game loop and the renderer. Recording is off by default, and callers are
+ * expected to check isEnabled() before taking any timestamps so that disabled metrics cost one volatile read.
+ * The metrics record while they are enabled, e.g. through JMX, or while they are displayed, e.g. in the debug HUD.
+ */
+public class GameMetrics implements GameMetricsMXBean
+{
+    public static final String OBJECT_NAME = "snake:type=GameMetrics";
+
+    private final LatencyHistogram tickDuration = new LatencyHistogram();
+    private final LatencyHistogram tickJitter = new LatencyHistogram();
+    private final LatencyHistogram renderTime = new LatencyHistogram();
+    private final LatencyHistogram inputToRenderLatency = new LatencyHistogram();
+
+    private volatile boolean recording = false;
+    private boolean enabled = false, displayed = false; // Guarded by this, recording is true if either is
+
+    /**
+     * Makes the metrics visible to JMX clients such as JConsole. Failing to register doesn't affect the game.
+     */
+    public void registerMBean()
+    {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        try
+        {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+
+            if (!mBeanServer.isRegistered(objectName))
+            {
+                mBeanServer.registerMBean(this, objectName);
+            }
+        }
+        catch (JMException ex)
+        {
+            System.out.println("Could not register the game metrics MBean: " + ex.toString());
+        }
+    }
+
+    /**
+     * Returns true while the metrics are recording, whether they were enabled or are being displayed.
+     */
+    @Override
+    public boolean isEnabled()
+    {
+        return recording;
+    }
+
+    @Override
+    public synchronized void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+        recording = enabled || displayed;
+    }
+
+    /**
+     * Keeps the metrics recording while they are displayed. Once they are no longer displayed they record
+     * only if they were enabled with setEnabled().
+     */
+    public synchronized void setDisplayed(boolean displayed)
+    {
+        this.displayed = displayed;
+        recording = enabled || displayed;
+    }
+
+    /**
+     * Records how long one game tick took to run.
+     */
+    public void recordTickDuration(long nanos)
+    {
+        tickDuration.record(nanos);
+    }
+
+    /**
+     * Records how long after its scheduled time a tick started.
+     */
+    public void recordTickJitter(long nanos)
+    {
+        tickJitter.record(nanos);
+    }
+
+    /**
+     * Records how long drawing one frame took.
+     */
+    public void recordRenderTime(long nanos)
+    {
+        renderTime.record(nanos);
+    }
+
+    /**
+     * Records the time between a key press being queued and the first frame showing its effect.
+     */
+    public void recordInputToRenderLatency(long nanos)
+    {
+        inputToRenderLatency.record(nanos);
+    }
+
+    @Override
+    public HistogramSummary getTickDuration()
+    {
+        return tickDuration.getSummary();
+    }
+
+    @Override
+    public HistogramSummary getTickJitter()
+    {
+        return tickJitter.getSummary();
+    }
+
+    @Override
+    public HistogramSummary getRenderTime()
+    {
+        return renderTime.getSummary();
+    }
+
+    @Override
+    public HistogramSummary getInputToRenderLatency()
+    {
+        return inputToRenderLatency.getSummary();
+    }
+
+    @Override
+    public void reset()
+    {
+        tickDuration.reset();
+        tickJitter.reset();
+        renderTime.reset();
+        inputToRenderLatency.reset();
+    }
+}
@@ -0,0 +1,21 @@
+package metrics;
+
+/**
+ * Management interface of GameMetrics, registered with the platform MBean server as GameMetrics.OBJECT_NAME.
+ */
+public interface GameMetricsMXBean
+{
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    HistogramSummary getTickDuration();
+
+    HistogramSummary getTickJitter();
+
+    HistogramSummary getRenderTime();
+
+    HistogramSummary getInputToRenderLatency();
+
+    void reset();
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("snake.HighScoreFile")
+@Label("High Score File")
+@Category({ "Snake", "Persistence" })
+@Description("The high scores were loaded from disk, saved to disk or compacted into a new snapshot")
+public class HighScoreFileEvent extends Event
+{
+    public static final String LOAD = "Load", SAVE = "Save", COMPACT = "Compact";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Entry Count")
+    public int entryCount;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    @Label("Error")
+    @Description("Why the operation failed, if it did")
+    public String error;
+}
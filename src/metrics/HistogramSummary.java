@@ -0,0 +1,43 @@
+package metrics;
+
+/**
+ * The count, median, 99th percentile and maximum of a LatencyHistogram at one point in time, in nanoseconds.
+ */
+public class HistogramSummary
+{
+    private final long count, p50Nanos, p99Nanos, maxNanos;
+
+    public HistogramSummary(long count, long p50Nanos, long p99Nanos, long maxNanos)
+    {
+        this.count = count;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long getP50Nanos()
+    {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos()
+    {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("p50 %.2f ms  p99 %.2f ms  max %.2f ms", p50Nanos / 1e6, p99Nanos / 1e6, maxNanos / 1e6);
+    }
+}
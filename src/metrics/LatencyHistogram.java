@@ -0,0 +1,114 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds into log-linear buckets: every power of two is split into
+ * SUB_BUCKET_COUNT buckets, so percentiles are accurate to within 12.5% whatever the range of the values.
+ * Recording never allocates or locks and may be done from several threads while another one reads.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3, SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong(), max = new AtomicLong();
+
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+
+        bucketCounts.incrementAndGet(getBucketIndex(value));
+        count.incrementAndGet();
+
+        long currentMax = max.get();
+
+        while (value > currentMax && !max.compareAndSet(currentMax, value))
+        {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile (0 - 100), 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile)
+    {
+        long totalCount = count.get();
+
+        if (totalCount == 0)
+        {
+            return 0;
+        }
+
+        long targetCount = Math.max(1, (long)Math.ceil(totalCount * percentile / 100));
+        long seenCount = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seenCount += bucketCounts.get(i);
+
+            if (seenCount >= targetCount)
+            {
+                return Math.min(getBucketUpperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    public HistogramSummary getSummary()
+    {
+        return new HistogramSummary(getCount(), getPercentile(50), getPercentile(99), getMax());
+    }
+
+    /**
+     * Clears the histogram. Values recorded while resetting may be partly lost.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            bucketCounts.set(i, 0);
+        }
+
+        count.set(0);
+        max.set(0);
+    }
+
+    private static int getBucketIndex(long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+        {
+            return (int)value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return (shift + 1) * SUB_BUCKET_COUNT + (int)((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    private static long getBucketUpperBound(int index)
+    {
+        if (index < SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+
+        return ((long)(SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("snake.Tick")
+@Label("Game Tick")
+@Category({ "Snake", "Game Loop" })
+@Description("One step of the game, from polling the input to publishing the render snapshot")
+public class TickEvent extends Event
+{
+    @Label("Tick")
+    public long tick;
+
+    @Label("Result")
+    public String result;
+
+    @Label("Input Applied")
+    public boolean inputApplied;
+
+    @Label("Snake Length")
+    public int snakeLength;
+
+    @Label("Score")
+    public int score;
+}
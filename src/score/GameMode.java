@@ -0,0 +1,144 @@
+package score;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The settings a game was played with that make its score comparable to others: whether the walls kill the snake,
+ * the size of the board in cells and how long a tick lasts. Every game mode has a leaderboard of its own, see
+ * HighScoreStore. The tick period is kept in whole milliseconds so modes compare exactly.
+ */
+public class GameMode implements Comparable<GameMode>
+{
+    private static final Pattern KEY_PATTERN = Pattern.compile("(walls|nowalls)-(\\d{1,5})x(\\d{1,5})-(\\d{1,5})ms");
+
+    private final boolean wallCollision;
+    private final int columns, rows, tickPeriodMillis;
+
+    public GameMode(boolean wallCollision, int columns, int rows, int tickPeriodMillis)
+    {
+        if (columns <= 0 || rows <= 0 || tickPeriodMillis <= 0)
+        {
+            throw new IllegalArgumentException("The board size and the tick period must be positive.");
+        }
+
+        this.wallCollision = wallCollision;
+        this.columns = columns;
+        this.rows = rows;
+        this.tickPeriodMillis = tickPeriodMillis;
+    }
+
+    /**
+     * Returns the game mode of a game played at the given number of ticks per second.
+     */
+    public static GameMode fromTickRate(boolean wallCollision, int columns, int rows, double ticksPerSecond)
+    {
+        return new GameMode(wallCollision, columns, rows, (int)Math.max(1, Math.round(1000 / ticksPerSecond)));
+    }
+
+    /**
+     * Parses a key returned by getKey(), returns null if the text isn't one.
+     */
+    public static GameMode fromKey(String key)
+    {
+        Matcher matcher = KEY_PATTERN.matcher(key);
+
+        if (!matcher.matches())
+        {
+            return null;
+        }
+
+        int columns = Integer.parseInt(matcher.group(2));
+        int rows = Integer.parseInt(matcher.group(3));
+        int tickPeriodMillis = Integer.parseInt(matcher.group(4));
+
+        if (columns == 0 || rows == 0 || tickPeriodMillis == 0)
+        {
+            return null;
+        }
+
+        return new GameMode(matcher.group(1).equals("walls"), columns, rows, tickPeriodMillis);
+    }
+
+    public boolean hasWallCollision()
+    {
+        return wallCollision;
+    }
+
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    public int getTickPeriodMillis()
+    {
+        return tickPeriodMillis;
+    }
+
+    /**
+     * Returns a short text that identifies the game mode and can be used in file names, e.g. "walls-75x50-75ms".
+     */
+    public String getKey()
+    {
+        return (wallCollision ? "walls" : "nowalls") + "-" + columns + "x" + rows + "-" + tickPeriodMillis + "ms";
+    }
+
+    public String getName()
+    {
+        return (wallCollision ? "Walls" : "No walls") + ", " + columns + " x " + rows + ", " + tickPeriodMillis + " ms per tick";
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof GameMode))
+        {
+            return false;
+        }
+
+        GameMode other = (GameMode)obj;
+
+        return wallCollision == other.wallCollision && columns == other.columns && rows == other.rows && tickPeriodMillis == other.tickPeriodMillis;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return ((Boolean.hashCode(wallCollision) * 31 + columns) * 31 + rows) * 31 + tickPeriodMillis;
+    }
+
+    /**
+     * Orders game modes with walls first, then by board size and then from the slowest to the fastest.
+     */
+    @Override
+    public int compareTo(GameMode other)
+    {
+        if (wallCollision != other.wallCollision)
+        {
+            return wallCollision ? -1 : 1;
+        }
+
+        if (columns != other.columns)
+        {
+            return Integer.compare(columns, other.columns);
+        }
+
+        if (rows != other.rows)
+        {
+            return Integer.compare(rows, other.rows);
+        }
+
+        return Integer.compare(other.tickPeriodMillis, tickPeriodMillis);
+    }
+}
@@ -0,0 +1,603 @@
+package score;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to the leaderboard since the high score snapshot of an earlier generation
+ * was written. Each log file starts with a header (magic, format version, generation) followed by records of
+ * a payload length, the CRC32 of the payload and the payload itself, so a record torn by a crash is detected
+ * and everything from it on is dropped.
+ *
+ * Appending only queues a record. A writer thread writes everything queued since its last write in one go and
+ * syncs the file once for all of it, so callers flushing at the same time share a single fsync.
+ */
+public class HighScoreLog
+{
+    public static final byte ADD_RECORD = 1, CLEAR_RECORD = 2;
+
+    private static final int MAGIC = 0x534E4B4C; // "SNKL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 1 << 16;
+    private static final String FILE_SUFFIX = ".log";
+
+    private final Path snapshotPath;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsQueuedCondition = lock.newCondition();
+    private final Condition recordsWrittenCondition = lock.newCondition();
+    private final Thread writerThread;
+
+    private FileChannel channel;
+    private long generation, size;
+    private byte[] pendingRecords = new byte[4096], spareRecords = new byte[4096];
+    private int pendingLength = 0;
+    private long queuedSequence = 0, writtenSequence = 0;
+    private IOException writeError;
+    private boolean closed = false;
+
+    /**
+     * Opens the log of the given generation that belongs to the snapshot, creating it if it doesn't exist yet.
+     * A torn record at the end of an existing log is cut off so new records follow the last intact one.
+     */
+    public HighScoreLog(Path snapshotPath, long generation) throws IOException
+    {
+        this.snapshotPath = snapshotPath;
+        this.generation = generation;
+
+        openChannel();
+
+        writerThread = new Thread(this::run, "High score log writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public long getGeneration()
+    {
+        lock.lock();
+
+        try
+        {
+            return generation;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the size the log file will have once everything queued so far has been written.
+     */
+    public long getSize()
+    {
+        lock.lock();
+
+        try
+        {
+            return size + pendingLength;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public static Path getPath(Path snapshotPath, long generation)
+    {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + "." + generation + FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the generations of all the logs that belong to the snapshot, in ascending order.
+     */
+    public static long[] findGenerations(Path snapshotPath) throws IOException
+    {
+        return findGenerations(snapshotPath, FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the generations of the files named like the snapshot followed by a generation and the suffix, in ascending order.
+     */
+    static long[] findGenerations(Path snapshotPath, String fileSuffix) throws IOException
+    {
+        Path directory = snapshotPath.toAbsolutePath().getParent();
+        String prefix = snapshotPath.getFileName() + ".";
+        ArrayList<Long> generations = new ArrayList<Long>();
+
+        if (!Files.isDirectory(directory))
+        {
+            return new long[0];
+        }
+
+        // Matched by hand rather than with a glob, the file name may hold characters a glob treats specially
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory))
+        {
+            for (Path path : paths)
+            {
+                String fileName = path.getFileName().toString();
+
+                if (fileName.length() <= prefix.length() + fileSuffix.length() || !fileName.startsWith(prefix) || !fileName.endsWith(fileSuffix))
+                {
+                    continue;
+                }
+
+                try
+                {
+                    generations.add(Long.parseLong(fileName.substring(prefix.length(), fileName.length() - fileSuffix.length())));
+                }
+                catch (NumberFormatException ex)
+                {
+                    // Not one of our files
+                }
+            }
+        }
+
+        long[] sortedGenerations = new long[generations.size()];
+
+        for (int i = 0; i < sortedGenerations.length; i++)
+        {
+            sortedGenerations[i] = generations.get(i);
+        }
+
+        Arrays.sort(sortedGenerations);
+
+        return sortedGenerations;
+    }
+
+    /**
+     * Deletes the logs of the given generation and all earlier ones, once a snapshot of that generation holds their records.
+     */
+    public static void deleteUpTo(Path snapshotPath, long generation) throws IOException
+    {
+        for (long logGeneration : findGenerations(snapshotPath))
+        {
+            if (logGeneration <= generation)
+            {
+                Files.deleteIfExists(getPath(snapshotPath, logGeneration));
+            }
+        }
+    }
+
+    /**
+     * Applies every intact record of the log file to the leaderboard, in the order they were appended.
+     */
+    public static void replay(Path logPath, Leaderboard leaderboard) throws IOException
+    {
+        readRecords(logPath, leaderboard);
+    }
+
+    public void appendAdd(String name, int score)
+    {
+        try
+        {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream payloadWriter = new DataOutputStream(payload);
+
+            payloadWriter.writeByte(ADD_RECORD);
+            payloadWriter.writeInt(score);
+            payloadWriter.writeUTF(name);
+
+            append(payload.toByteArray());
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalArgumentException("The name is too long to be logged.", ex);
+        }
+    }
+
+    public void appendClear()
+    {
+        append(new byte[] { CLEAR_RECORD });
+    }
+
+    /**
+     * Waits until everything appended so far is on disk.
+     */
+    public void flush() throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            awaitWritten();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes this log and carries on appending to a new log of the next generation. Returns the generation of
+     * the log that was just finished, which a snapshot of everything appended so far can then replace.
+     */
+    public long rotate() throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            if (closed)
+            {
+                throw new IOException("The high score log has been closed.");
+            }
+
+            awaitWritten();
+
+            FileChannel finishedChannel = channel;
+
+            generation++;
+
+            try
+            {
+                openChannel();
+            }
+            catch (IOException ex)
+            {
+                generation--;
+
+                throw ex;
+            }
+
+            finishedChannel.close();
+
+            return generation - 1;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the log, stops its writer thread and closes the file.
+     */
+    public void close() throws IOException
+    {
+        IOException flushError = null;
+
+        lock.lock();
+
+        try
+        {
+            if (closed)
+            {
+                return;
+            }
+
+            try
+            {
+                awaitWritten();
+            }
+            catch (IOException ex)
+            {
+                flushError = ex;
+            }
+
+            closed = true;
+            recordsQueuedCondition.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        try
+        {
+            writerThread.join();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        channel.close();
+
+        if (flushError != null)
+        {
+            throw flushError;
+        }
+    }
+
+    private void append(byte[] payload)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        lock.lock();
+
+        try
+        {
+            if (closed)
+            {
+                throw new IllegalStateException("The high score log has been closed.");
+            }
+
+            int recordLength = RECORD_HEADER_SIZE + payload.length;
+
+            if (pendingLength + recordLength > pendingRecords.length)
+            {
+                pendingRecords = Arrays.copyOf(pendingRecords, Math.max(pendingRecords.length * 2, pendingLength + recordLength));
+            }
+
+            ByteBuffer.wrap(pendingRecords, pendingLength, RECORD_HEADER_SIZE).putInt(payload.length).putInt((int)crc.getValue());
+            System.arraycopy(payload, 0, pendingRecords, pendingLength + RECORD_HEADER_SIZE, payload.length);
+
+            pendingLength += recordLength;
+            queuedSequence++;
+
+            recordsQueuedCondition.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the writer has written everything queued so far, the lock must be held.
+     */
+    private void awaitWritten() throws IOException
+    {
+        long targetSequence = queuedSequence;
+
+        while (writtenSequence < targetSequence && writeError == null)
+        {
+            recordsWrittenCondition.awaitUninterruptibly();
+        }
+
+        if (writeError != null)
+        {
+            throw new IOException("Writing to the high score log failed: " + writeError.getMessage(), writeError);
+        }
+    }
+
+    private void run()
+    {
+        while (true)
+        {
+            byte[] batch;
+            int batchLength;
+            long batchSequence;
+            FileChannel batchChannel;
+
+            lock.lock();
+
+            try
+            {
+                while (pendingLength == 0 && !closed)
+                {
+                    recordsQueuedCondition.awaitUninterruptibly();
+                }
+
+                if (pendingLength == 0)
+                {
+                    return;
+                }
+
+                batch = pendingRecords;
+                batchLength = pendingLength;
+                batchSequence = queuedSequence;
+                batchChannel = channel;
+
+                pendingRecords = spareRecords;
+                pendingLength = 0;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            IOException batchError = null;
+
+            // Once a write has failed the end of the file can't be trusted anymore, so nothing more is written
+            if (writeError == null)
+            {
+                try
+                {
+                    ByteBuffer buffer = ByteBuffer.wrap(batch, 0, batchLength);
+
+                    while (buffer.hasRemaining())
+                    {
+                        batchChannel.write(buffer);
+                    }
+
+                    batchChannel.force(false);
+                }
+                catch (IOException ex)
+                {
+                    batchError = ex;
+                }
+            }
+
+            lock.lock();
+
+            try
+            {
+                spareRecords = batch;
+
+                if (batchError != null)
+                {
+                    writeError = batchError;
+                }
+                else if (writeError == null)
+                {
+                    size += batchLength;
+                    writtenSequence = batchSequence;
+                }
+
+                recordsWrittenCondition.signalAll();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void openChannel() throws IOException
+    {
+        Path logPath = getPath(snapshotPath, generation);
+        long validLength = Files.exists(logPath) ? readRecords(logPath, null) : 0;
+
+        FileChannel newChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try
+        {
+            if (validLength < HEADER_SIZE)
+            {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(generation).flip();
+
+                newChannel.truncate(0);
+
+                while (header.hasRemaining())
+                {
+                    newChannel.write(header, header.position());
+                }
+
+                validLength = HEADER_SIZE;
+                newChannel.force(true);
+            }
+            else if (newChannel.size() > validLength)
+            {
+                newChannel.truncate(validLength);
+                newChannel.force(true);
+            }
+
+            newChannel.position(validLength);
+        }
+        catch (IOException ex)
+        {
+            newChannel.close();
+
+            throw ex;
+        }
+
+        channel = newChannel;
+        size = validLength;
+    }
+
+    /**
+     * Reads the log file, applying its records to the leaderboard if one is given, and returns the length of
+     * its intact part. Returns 0 if not even the header was written completely.
+     */
+    private static long readRecords(Path logPath, Leaderboard leaderboard) throws IOException
+    {
+        try (InputStream fileStream = Files.newInputStream(logPath))
+        {
+            DataInputStream logReader = new DataInputStream(new BufferedInputStream(fileStream));
+            long validLength;
+
+            try
+            {
+                if (logReader.readInt() != MAGIC)
+                {
+                    throw new IOException("The file " + logPath + " is not a high score log.");
+                }
+
+                int version = logReader.readInt();
+
+                if (version != FORMAT_VERSION)
+                {
+                    throw new IOException("The high score log " + logPath + " has an unsupported format version (" + version + ").");
+                }
+
+                logReader.readLong();
+                validLength = HEADER_SIZE;
+            }
+            catch (EOFException ex)
+            {
+                return 0;
+            }
+
+            byte[] payload = new byte[256];
+            CRC32 crc = new CRC32();
+
+            while (true)
+            {
+                int payloadLength, checksum;
+
+                try
+                {
+                    payloadLength = logReader.readInt();
+                    checksum = logReader.readInt();
+
+                    if (payloadLength <= 0 || payloadLength > MAX_PAYLOAD_SIZE)
+                    {
+                        return validLength;
+                    }
+
+                    if (payload.length < payloadLength)
+                    {
+                        payload = new byte[payloadLength];
+                    }
+
+                    logReader.readFully(payload, 0, payloadLength);
+                }
+                catch (EOFException ex)
+                {
+                    return validLength;
+                }
+
+                crc.reset();
+                crc.update(payload, 0, payloadLength);
+
+                if ((int)crc.getValue() != checksum)
+                {
+                    return validLength;
+                }
+
+                if (leaderboard != null)
+                {
+                    applyRecord(payload, payloadLength, leaderboard);
+                }
+
+                validLength += RECORD_HEADER_SIZE + payloadLength;
+            }
+        }
+    }
+
+    private static void applyRecord(byte[] payload, int payloadLength, Leaderboard leaderboard) throws IOException
+    {
+        DataInputStream recordReader = new DataInputStream(new ByteArrayInputStream(payload, 0, payloadLength));
+
+        switch (recordReader.readByte())
+        {
+            case ADD_RECORD:
+                int score = recordReader.readInt();
+
+                if (!Leaderboard.isValidScore(score))
+                {
+                    throw new IOException("The high score log contains a score out of range (" + score + ").");
+                }
+
+                leaderboard.add(recordReader.readUTF(), score);
+                break;
+            case CLEAR_RECORD:
+                leaderboard.clear();
+                break;
+            default:
+                throw new IOException("The high score log contains a record of an unknown type.");
+        }
+    }
+}
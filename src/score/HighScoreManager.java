@@ -1,34 +1,120 @@
 package score;
 
+import metrics.HighScoreFileEvent;
+
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Keeps every high score ever submitted on a Leaderboard. The high score board shows the top HIGH_SCORES_COUNT of them.
+ *
+ * On disk the high scores are a HighScoreSnapshot, which loading maps rather than reads, plus a HighScoreLog
+ * of the changes made since. A new score is a single append to the log, and once the log has grown past
+ * COMPACTION_THRESHOLD_BYTES a background thread writes a snapshot of a new generation and then points the high
+ * score file at it, so a crash at any point leaves either the old or the new snapshot along with the logs that
+ * complete it. The snapshot records the generation of the last log it holds, logs of that generation or earlier
+ * are stale, and so are the snapshots of other generations, which are deleted once nothing has them mapped.
+ * High score files in the older text and single snapshot formats are converted the first time they are loaded.
+ *
+ * Loading and saving can also run on a persistence thread, see loadHighScoresAsync() and saveHighScoresAsync(), so
+ * the UI never waits for the disk. Changes made while the high scores are still loading are kept and applied
+ * on top of what was loaded. The methods of this class can be called from any thread.
+ *
+ * The top of the board is cached until a change reaches it, so showing the board again costs nothing and
+ * scores that don't make it onto the board leave the cache alone.
+ */
 public class HighScoreManager
 {
     public final String HIGH_SCORE_FILE_PATH = "data\\highscores.dat";
     public final int HIGH_SCORES_COUNT = 5;
     public final int MIN_NAME_LENGTH = 1, MAX_NAME_LENGTH = 30;
+    public final long COMPACTION_THRESHOLD_BYTES = 64 * 1024;
 
     private final String DATA_DELIMITER = "\\|"; // NOTE: The pipe symbol is a metacharacter in regex so we must escape it by using two backwards slashes
     private final String COMMENT_PREFIX = "--";
+    private final String GENERATION_PREFIX = COMMENT_PREFIX + " Generation: ";
+    private final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final String highScoreFilePath;
+    private final Path snapshotPath;
+    private final ExecutorService persistenceExecutor;
+    private final boolean ownsPersistenceExecutor;
 
-    private HighScore[] highScoresLeaderboard;
+    private Leaderboard leaderboard = new Leaderboard();
+    private HighScore[] topHighScores; // What getHighScoresLeaderboard() returns, null once a change has reached the board
+    private HighScoreLog highScoreLog;
+    private final ArrayList<HighScore> unloggedChanges = new ArrayList<HighScore>(); // Changes made while no log was open, null stands for a clear
+    private CompletableFuture<Void> pendingSave;
+    private Thread compactionThread, shutdownHook;
+    private IOException compactionError; // Why the last compaction failed, until a save has reported it
 
     public HighScoreManager()
     {
-        clearHighScoresLeaderboard();
+        this.highScoreFilePath = HIGH_SCORE_FILE_PATH;
+        this.snapshotPath = Paths.get(highScoreFilePath);
+        this.persistenceExecutor = createPersistenceExecutor();
+        this.ownsPersistenceExecutor = true;
     }
 
-    public void clearHighScoresLeaderboard()
+    /**
+     * Keeps the high scores in the given file instead of the default one, e.g. for benchmarks.
+     */
+    public HighScoreManager(String highScoreFilePath)
     {
-        highScoresLeaderboard = new HighScore[HIGH_SCORES_COUNT];
+        this.highScoreFilePath = highScoreFilePath;
+        this.snapshotPath = Paths.get(highScoreFilePath);
+        this.persistenceExecutor = createPersistenceExecutor();
+        this.ownsPersistenceExecutor = true;
+    }
 
-        for (int i = 0; i < HIGH_SCORES_COUNT; i++)
-        {
-            highScoresLeaderboard[i] = new HighScore("", 0);
-        }
+    /**
+     * Keeps the high scores in the given file and loads and saves them on a persistence thread shared with other
+     * managers. Whoever owns the executor shuts it down before closing the managers, see HighScoreStore.
+     */
+    HighScoreManager(String highScoreFilePath, ExecutorService persistenceExecutor)
+    {
+        this.highScoreFilePath = highScoreFilePath;
+        this.snapshotPath = Paths.get(highScoreFilePath);
+        this.persistenceExecutor = persistenceExecutor;
+        this.ownsPersistenceExecutor = false;
+    }
+
+    static ExecutorService createPersistenceExecutor()
+    {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread persistenceThread = new Thread(runnable, "High score persistence");
+            persistenceThread.setDaemon(true);
+
+            return persistenceThread;
+        });
+    }
+
+    public String getHighScoreFilePath()
+    {
+        return highScoreFilePath;
+    }
+
+    /**
+     * Clears the leaderboard, which is logged like a new score is and takes effect on disk with saveHighScores().
+     */
+    public synchronized void clearHighScoresLeaderboard()
+    {
+        leaderboard.clear();
+        topHighScores = null;
+        logChange(null);
     }
 
     public String getDataDelimiter()
@@ -36,29 +122,190 @@ public class HighScoreManager
         return DATA_DELIMITER.replace("\\", "");
     }
 
-    public final HighScore[] getHighScoresLeaderboard()
+    /**
+     * Returns the top HIGH_SCORES_COUNT high scores, padded with empty entries if there are fewer.
+     */
+    public final synchronized HighScore[] getHighScoresLeaderboard()
+    {
+        if (topHighScores == null)
+        {
+            HighScore[] leaderboardTop = leaderboard.getTop(HIGH_SCORES_COUNT);
+            topHighScores = new HighScore[HIGH_SCORES_COUNT];
+
+            for (int i = 0; i < HIGH_SCORES_COUNT; i++)
+            {
+                topHighScores[i] = i < leaderboardTop.length ? leaderboardTop[i] : new HighScore("", 0);
+            }
+        }
+
+        return topHighScores.clone();
+    }
+
+    /**
+     * Returns the number of high scores ever submitted, not just the ones shown on the high score board.
+     */
+    public synchronized int getHighScoreCount()
     {
-        return highScoresLeaderboard;
+        return leaderboard.size();
     }
 
-    private String getFileHeaderComment()
+    /**
+     * Returns up to count high scores in rank order starting at the given rank, see Leaderboard.getPage().
+     */
+    public synchronized HighScore[] getHighScores(int fromRank, int count)
     {
-        return COMMENT_PREFIX + " This file stores the high scores for the Snake Game by Darian Benam.\n" + COMMENT_PREFIX + " MODIFYING THIS FILE CAN RESULT IN DATA CORRUPTION / UNEXPECTED PROGRAM BEHAVIOUR.\n\n";
+        return leaderboard.getPage(fromRank, count);
     }
 
+    /**
+     * Loads the snapshot and replays the logs written after it. A missing snapshot is an empty leaderboard.
+     */
     public void loadHighScores() throws Exception
     {
-        File highScoreFile = new File(HIGH_SCORE_FILE_PATH);
+        HighScoreFileEvent fileEvent = new HighScoreFileEvent();
+        fileEvent.begin();
+
+        int entryCount = 0;
+
+        try
+        {
+            entryCount = readHighScores();
+            fileEvent.succeeded = true;
+        }
+        catch (Exception ex)
+        {
+            fileEvent.error = ex.getMessage();
+
+            throw ex;
+        }
+        finally
+        {
+            commitFileEvent(fileEvent, HighScoreFileEvent.LOAD, entryCount);
+        }
+    }
+
+    /**
+     * Loads the high scores on the persistence thread, the returned future completes once they are loaded.
+     */
+    public CompletableFuture<Void> loadHighScoresAsync()
+    {
+        CompletableFuture<Void> load = new CompletableFuture<Void>();
+
+        persistenceExecutor.execute(() -> {
+            try
+            {
+                loadHighScores();
+                load.complete(null);
+            }
+            catch (Exception ex)
+            {
+                load.completeExceptionally(ex);
+            }
+        });
+
+        return load;
+    }
+
+    /**
+     * Reads the files into a new leaderboard and switches over to it, returns the number of entries loaded.
+     */
+    private int readHighScores() throws Exception
+    {
+        awaitCompaction();
+        closeLog();
+
+        Leaderboard loadedLeaderboard = new Leaderboard();
+
+        long generation = Files.exists(snapshotPath) ? readSnapshot(loadedLeaderboard) : 0;
+        long logGeneration = generation + 1;
+
+        for (long staleOrNewGeneration : HighScoreLog.findGenerations(snapshotPath))
+        {
+            Path logPath = HighScoreLog.getPath(snapshotPath, staleOrNewGeneration);
+
+            if (staleOrNewGeneration <= generation) // Left behind by a crash right after a compaction
+            {
+                Files.deleteIfExists(logPath);
+            }
+            else
+            {
+                HighScoreLog.replay(logPath, loadedLeaderboard);
+                logGeneration = staleOrNewGeneration;
+            }
+        }
+
+        int entryCount = loadedLeaderboard.size();
+
+        installLog(new HighScoreLog(snapshotPath, logGeneration), loadedLeaderboard);
+
+        return entryCount;
+    }
+
+    /**
+     * Loads the snapshot into the leaderboard and returns its generation, converting an older high score file first.
+     */
+    private long readSnapshot(Leaderboard loadedLeaderboard) throws Exception
+    {
+        if (HighScoreSnapshot.isSnapshot(snapshotPath)) // The whole snapshot, from before each generation had a file of its own
+        {
+            long generation = HighScoreSnapshot.readGeneration(snapshotPath);
+            Path generationPath = HighScoreSnapshot.getPath(snapshotPath, generation);
+
+            Files.copy(snapshotPath, generationPath, StandardCopyOption.REPLACE_EXISTING);
+            syncFile(generationPath);
+            writePointer(generation);
+        }
+        else if (!HighScoreSnapshot.isPointer(snapshotPath))
+        {
+            long generation = readTextSnapshot(loadedLeaderboard);
+
+            writeSnapshot(loadedLeaderboard, generation);
+        }
+
+        HighScoreSnapshot snapshot = openSnapshot();
+        loadedLeaderboard.load(snapshot);
+        deleteStaleSnapshots(snapshot.getGeneration());
+
+        return snapshot.getGeneration();
+    }
+
+    /**
+     * Opens the snapshot the high score file points at, or returns null if there is no high score file yet.
+     */
+    private HighScoreSnapshot openSnapshot() throws IOException
+    {
+        if (!Files.exists(snapshotPath))
+        {
+            return null;
+        }
+
+        return HighScoreSnapshot.open(HighScoreSnapshot.getPath(snapshotPath, HighScoreSnapshot.readPointer(snapshotPath)));
+    }
+
+    /**
+     * Reads a text high score file into the empty leaderboard and returns its generation, 0 for files from before there were logs.
+     */
+    private long readTextSnapshot(Leaderboard loadedLeaderboard) throws Exception
+    {
+        File highScoreFile = new File(highScoreFilePath);
         Scanner fileReader = new Scanner(highScoreFile);
 
-        int totalLinesRead = 0;
+        long generation = 0;
         String highScoreLine;
         String[] lineTokens;
-        
-        while (fileReader.hasNextLine() && totalLinesRead < HIGH_SCORES_COUNT)
+        ArrayList<HighScore> highScores = new ArrayList<HighScore>();
+
+        while (fileReader.hasNextLine())
         {
             highScoreLine = fileReader.nextLine();
 
+            if (highScoreLine.startsWith(GENERATION_PREFIX))
+            {
+                generation = Long.parseLong(highScoreLine.substring(GENERATION_PREFIX.length()).trim());
+
+                continue;
+            }
+
             if (highScoreLine.isEmpty()
                 || highScoreLine.length() >= COMMENT_PREFIX.length()
                 && highScoreLine.substring(0, COMMENT_PREFIX.length()).equals(COMMENT_PREFIX))
@@ -68,64 +315,525 @@ public class HighScoreManager
 
             lineTokens = highScoreLine.split(DATA_DELIMITER);
 
-            highScoresLeaderboard[totalLinesRead].name = lineTokens[0];
-            highScoresLeaderboard[totalLinesRead].score = Integer.parseInt(lineTokens[1]);
+            // Older files pad the board with nameless zero scores, those aren't real entries
+            if (!lineTokens[0].isEmpty())
+            {
+                int score = Integer.parseInt(lineTokens[1]);
 
-            totalLinesRead++;
+                if (!Leaderboard.isValidScore(score))
+                {
+                    fileReader.close();
+
+                    throw new IOException("The high score file " + highScoreFilePath + " contains a score out of range (" + score + ").");
+                }
+
+                highScores.add(new HighScore(lineTokens[0], score));
+            }
         }
 
         fileReader.close();
+
+        // The file is in rank order, so adding from the bottom up keeps the newest of equal scores first
+        for (int i = highScores.size() - 1; i >= 0; i--)
+        {
+            loadedLeaderboard.add(highScores.get(i).name, highScores.get(i).score);
+        }
+
+        return generation;
     }
 
+    /**
+     * Waits until every change made so far is on disk. If the high scores were never loaded, writes them out as
+     * a new snapshot instead and starts logging from there. Starts a compaction in the background when the log
+     * has grown large enough. If the last compaction failed, throws its error once the changes are on disk.
+     */
     public void saveHighScores() throws IOException
     {
-        File highScoreFile = new File(HIGH_SCORE_FILE_PATH);
-        FileWriter fileWriter = new FileWriter(highScoreFile);
+        HighScoreFileEvent fileEvent = new HighScoreFileEvent();
+        fileEvent.begin();
+
+        int entryCount = 0;
+
+        try
+        {
+            entryCount = writeHighScores();
+            fileEvent.succeeded = true;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            fileEvent.error = ex.getMessage();
+
+            throw ex;
+        }
+        finally
+        {
+            commitFileEvent(fileEvent, HighScoreFileEvent.SAVE, entryCount);
+        }
+
+        IOException failedCompaction;
+
+        synchronized (this)
+        {
+            failedCompaction = compactionError;
+            compactionError = null;
+        }
+
+        if (failedCompaction != null)
+        {
+            throw new IOException("The high scores were saved, but compacting the high score files failed: " + failedCompaction.getMessage(), failedCompaction);
+        }
+    }
+
+    /**
+     * Saves the high scores on the persistence thread. Saves asked for before an earlier one has started are
+     * coalesced into it and share its future, which completes once all of their changes are on disk.
+     */
+    public synchronized CompletableFuture<Void> saveHighScoresAsync()
+    {
+        if (pendingSave == null)
+        {
+            pendingSave = new CompletableFuture<Void>();
+
+            persistenceExecutor.execute(this::runPendingSave);
+        }
+
+        return pendingSave;
+    }
 
-        fileWriter.write(getFileHeaderComment());
+    private void runPendingSave()
+    {
+        CompletableFuture<Void> save;
 
-        for (int i = 0; i < highScoresLeaderboard.length; i++)
+        synchronized (this)
         {
-            fileWriter.write(highScoresLeaderboard[i].name + getDataDelimiter() + highScoresLeaderboard[i].score + (i == highScoresLeaderboard.length - 1 ? "" : "\n"));
+            save = pendingSave;
+            pendingSave = null;
         }
 
-        fileWriter.close();
+        try
+        {
+            saveHighScores();
+            save.complete(null);
+        }
+        catch (Exception ex)
+        {
+            save.completeExceptionally(ex);
+        }
     }
 
-    public int getHighScoreRank(int score)
+    /**
+     * Returns the number of entries saved.
+     */
+    private int writeHighScores() throws IOException
     {
-        for (int i = 0; i < highScoresLeaderboard.length; i++)
+        HighScoreLog log;
+        Leaderboard unloggedLeaderboard = null;
+        int entryCount;
+
+        synchronized (this)
         {
-            if (score >= highScoresLeaderboard[i].score)
+            log = highScoreLog;
+            entryCount = leaderboard.size();
+
+            if (log == null)
             {
-                return i + 1;
+                unloggedLeaderboard = leaderboard.copy();
+                unloggedChanges.clear();
             }
         }
 
-        return -1;
+        if (log == null)
+        {
+            // Past every log and snapshot on disk, so the new snapshot never has to replace one that may be mapped
+            long[] logGenerations = HighScoreLog.findGenerations(snapshotPath);
+            long[] snapshotGenerations = HighScoreSnapshot.findGenerations(snapshotPath);
+            long generation = 1 + Math.max(logGenerations.length > 0 ? logGenerations[logGenerations.length - 1] : 0,
+                                           snapshotGenerations.length > 0 ? snapshotGenerations[snapshotGenerations.length - 1] : 0);
+
+            writeSnapshot(unloggedLeaderboard, generation);
+            HighScoreLog.deleteUpTo(snapshotPath, generation);
+
+            installLog(new HighScoreLog(snapshotPath, generation + 1), null);
+
+            return entryCount;
+        }
+
+        log.flush();
+
+        if (log.getSize() >= COMPACTION_THRESHOLD_BYTES)
+        {
+            startCompaction(log);
+        }
+
+        return entryCount;
     }
 
-    public boolean isValidName(String name)
+    /**
+     * Starts appending to the log, first catching it up on the changes made while there was no log. If a leaderboard
+     * is given it replaces the current one and the changes are applied to it too.
+     */
+    private synchronized void installLog(HighScoreLog log, Leaderboard loadedLeaderboard)
     {
-        return name != null && !name.isEmpty() && name.length() >= MIN_NAME_LENGTH && name.length() <= MAX_NAME_LENGTH && !name.contains(getDataDelimiter());
+        for (HighScore change : unloggedChanges)
+        {
+            if (loadedLeaderboard != null)
+            {
+                if (change == null)
+                {
+                    loadedLeaderboard.clear();
+                }
+                else
+                {
+                    loadedLeaderboard.add(change.name, change.score);
+                }
+            }
+
+            appendChange(log, change);
+        }
+
+        unloggedChanges.clear();
+
+        if (loadedLeaderboard != null)
+        {
+            leaderboard = loadedLeaderboard;
+            topHighScores = null;
+        }
+
+        highScoreLog = log;
+    }
+
+    /**
+     * Logs a change made to the leaderboard, or keeps it until there is a log, the lock must be held.
+     */
+    private void logChange(HighScore change)
+    {
+        if (highScoreLog == null)
+        {
+            unloggedChanges.add(change);
+        }
+        else
+        {
+            appendChange(highScoreLog, change);
+        }
+    }
+
+    private static void appendChange(HighScoreLog log, HighScore change)
+    {
+        if (change == null)
+        {
+            log.appendClear();
+        }
+        else
+        {
+            log.appendAdd(change.name, change.score);
+        }
+    }
+
+    /**
+     * Starts a compaction on a background thread unless one is still running.
+     */
+    private synchronized void startCompaction(HighScoreLog log)
+    {
+        if (compactionThread != null && compactionThread.isAlive())
+        {
+            return;
+        }
+
+        compactionThread = new Thread(() -> compact(log), "High score compaction");
+        compactionThread.setDaemon(true);
+        compactionThread.start();
+    }
+
+    /**
+     * Switches the log over to a new generation, then merges the current snapshot with the logs up to the
+     * previous generation into a new snapshot. Works from the files alone, so the leaderboard in use is never
+     * touched from the compaction thread.
+     */
+    private void compact(HighScoreLog log)
+    {
+        HighScoreFileEvent fileEvent = new HighScoreFileEvent();
+        fileEvent.begin();
+
+        Leaderboard compactedLeaderboard = new Leaderboard();
+
+        try
+        {
+            long generation = log.rotate();
+            long snapshotGeneration = 0;
+
+            HighScoreSnapshot snapshot = openSnapshot();
+
+            if (snapshot != null)
+            {
+                compactedLeaderboard.load(snapshot);
+                snapshotGeneration = snapshot.getGeneration();
+            }
+
+            for (long logGeneration : HighScoreLog.findGenerations(snapshotPath))
+            {
+                if (logGeneration > snapshotGeneration && logGeneration <= generation)
+                {
+                    HighScoreLog.replay(HighScoreLog.getPath(snapshotPath, logGeneration), compactedLeaderboard);
+                }
+            }
+
+            writeSnapshot(compactedLeaderboard, generation);
+            HighScoreLog.deleteUpTo(snapshotPath, generation);
+
+            fileEvent.succeeded = true;
+        }
+        catch (IOException | UncheckedIOException ex)
+        {
+            // The logs are still there so nothing is lost, the next compaction will include them again
+            IOException error = ex instanceof UncheckedIOException ? ((UncheckedIOException)ex).getCause() : (IOException)ex;
+
+            fileEvent.error = error.getMessage();
+
+            synchronized (this)
+            {
+                compactionError = error;
+            }
+        }
+        finally
+        {
+            commitFileEvent(fileEvent, HighScoreFileEvent.COMPACT, compactedLeaderboard.size());
+        }
+    }
+
+    /**
+     * Writes the leaderboard to the snapshot file of the generation, which nothing has mapped yet, points the high
+     * score file at it and deletes the snapshots of earlier generations that are no longer mapped.
+     */
+    private void writeSnapshot(Leaderboard highScores, long generation) throws IOException
+    {
+        Path generationPath = HighScoreSnapshot.getPath(snapshotPath, generation);
+        Path tempPath = generationPath.resolveSibling(generationPath.getFileName() + TEMP_FILE_SUFFIX);
+
+        try
+        {
+            HighScoreSnapshot.write(tempPath, highScores, generation);
+            Files.move(tempPath, generationPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ex)
+        {
+            Files.deleteIfExists(tempPath);
+
+            throw ex;
+        }
+
+        writePointer(generation);
+        deleteStaleSnapshots(generation);
+    }
+
+    /**
+     * Writes a temporary pointer to the snapshot of the generation, syncs it and renames it over the high score
+     * file in one atomic step. The high score file is never mapped, so this works on Windows too.
+     */
+    private void writePointer(long generation) throws IOException
+    {
+        Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + TEMP_FILE_SUFFIX);
+
+        try
+        {
+            HighScoreSnapshot.writePointer(tempPath, generation);
+            Files.move(tempPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ex)
+        {
+            Files.deleteIfExists(tempPath);
+
+            throw ex;
+        }
+
+        syncDirectory();
+    }
+
+    /**
+     * Deletes the snapshots of every generation but the current one. On Windows a snapshot an older leaderboard
+     * still has mapped can't be deleted until the mapping is gone, it is deleted on a later load or compaction.
+     */
+    private void deleteStaleSnapshots(long currentGeneration) throws IOException
+    {
+        for (long generation : HighScoreSnapshot.findGenerations(snapshotPath))
+        {
+            if (generation != currentGeneration)
+            {
+                try
+                {
+                    Files.deleteIfExists(HighScoreSnapshot.getPath(snapshotPath, generation));
+                }
+                catch (IOException ex)
+                {
+                    // Still mapped, try again next time
+                }
+            }
+        }
+    }
+
+    private static void syncFile(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+        {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Makes the rename of the high score file durable where the platform allows syncing a directory.
+     */
+    private void syncDirectory()
+    {
+        try (FileChannel directoryChannel = FileChannel.open(snapshotPath.toAbsolutePath().getParent(), StandardOpenOption.READ))
+        {
+            directoryChannel.force(true);
+        }
+        catch (IOException ex)
+        {
+            // Not supported on this platform (e.g. Windows), the rename is still atomic
+        }
+    }
+
+    private void awaitCompaction()
+    {
+        Thread runningCompaction;
+
+        synchronized (this)
+        {
+            runningCompaction = compactionThread;
+        }
+
+        if (runningCompaction == null)
+        {
+            return;
+        }
+
+        try
+        {
+            runningCompaction.join();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Closes the log once everything in it is on disk. Changes made from then on are kept until a log is open again.
+     */
+    private void closeLog() throws IOException
+    {
+        HighScoreLog closingLog;
+
+        synchronized (this)
+        {
+            closingLog = highScoreLog;
+            highScoreLog = null;
+        }
+
+        if (closingLog != null)
+        {
+            closingLog.close();
+        }
     }
 
-    public void updateHighScore(int rank, String name, int score)
+    /**
+     * Waits for the loads and saves already asked for and a running compaction, then closes the log once
+     * everything in it is on disk. Nothing can be loaded or saved asynchronously afterwards. A manager sharing
+     * its persistence thread leaves waiting for the loads and saves to the owner of the thread.
+     */
+    public void close() throws IOException
     {
-        final int RANK_INDEX = rank - 1;
+        if (ownsPersistenceExecutor)
+        {
+            shutdownPersistenceExecutor(persistenceExecutor);
+        }
+
+        awaitCompaction();
+        closeLog();
+    }
+
+    /**
+     * Lets the loads and saves already handed to the executor finish and waits for them.
+     */
+    static void shutdownPersistenceExecutor(ExecutorService persistenceExecutor)
+    {
+        persistenceExecutor.shutdown();
+
+        try
+        {
+            persistenceExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Closes the manager when the program exits, e.g. through System.exit(), so scores that are still being saved
+     * make it to the disk.
+     */
+    public synchronized void closeOnExit()
+    {
+        if (shutdownHook != null)
+        {
+            return;
+        }
+
+        shutdownHook = new Thread(() -> {
+            try
+            {
+                close();
+            }
+            catch (IOException ex)
+            {
+                // The program is exiting, there is nowhere left to report this
+            }
+        }, "High score shutdown");
+
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
 
-        if (RANK_INDEX < 0 || RANK_INDEX > HIGH_SCORES_COUNT)
+    private void commitFileEvent(HighScoreFileEvent fileEvent, String operation, int entryCount)
+    {
+        if (fileEvent.shouldCommit())
         {
-            throw new RuntimeException("Rank out of bounds.");
+            fileEvent.operation = operation;
+            fileEvent.path = highScoreFilePath;
+            fileEvent.entryCount = entryCount;
+            fileEvent.commit();
         }
+    }
+
+    /**
+     * Returns the rank the score would get on the high score board, or -1 if it wouldn't make it onto the board.
+     */
+    public synchronized int getHighScoreRank(int score)
+    {
+        int rank = leaderboard.getRank(score);
+
+        return rank <= HIGH_SCORES_COUNT ? rank : -1;
+    }
+
+    public boolean isValidName(String name)
+    {
+        return name != null && !name.isEmpty() && name.length() >= MIN_NAME_LENGTH && name.length() <= MAX_NAME_LENGTH && !name.contains(getDataDelimiter());
+    }
+
+    /**
+     * Adds a high score and returns the rank it got, which may be below the high score board. The score is
+     * logged straight away and is on disk once saveHighScores() returns or saveHighScoresAsync() completes.
+     */
+    public synchronized int addHighScore(String name, int score)
+    {
+        int rank = leaderboard.add(name, score);
+        logChange(new HighScore(name, score));
 
-        for (int i = highScoresLeaderboard.length - 1; i > RANK_INDEX; i--)
+        if (rank <= HIGH_SCORES_COUNT)
         {
-            highScoresLeaderboard[i].name = highScoresLeaderboard[i - 1].name;
-            highScoresLeaderboard[i].score = highScoresLeaderboard[i - 1].score;
+            topHighScores = null;
         }
 
-        highScoresLeaderboard[RANK_INDEX].name = name;
-        highScoresLeaderboard[RANK_INDEX].score = score;
+        return rank;
     }
-}
\ No newline at end of file
+}
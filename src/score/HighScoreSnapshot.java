@@ -0,0 +1,424 @@
+package score;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A binary high score snapshot, read through memory mapping. The file is a header (magic, format version,
+ * generation, entry count, distinct score count) followed by fixed-width records of every entry in rank order
+ * and an index of how many entries each distinct score has, highest score first.
+ *
+ * Opening a snapshot only reads the header and the index, entries are decoded from the mapping when they are
+ * asked for, so only the pages holding those entries are ever read from disk.
+ *
+ * Each generation of the snapshot is a file of its own, named like the high score file followed by the generation,
+ * and the high score file itself is a small pointer holding the generation of the current one. A new snapshot is
+ * switched to by replacing the pointer, never the snapshot, as Windows can neither replace nor delete a file while
+ * it is mapped.
+ */
+public class HighScoreSnapshot
+{
+    public static final int MAGIC = 0x534E4B53; // "SNKS"
+    public static final int POINTER_MAGIC = 0x534E4B50; // "SNKP"
+    public static final int RECORD_SIZE = 128;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int INDEX_ENTRY_SIZE = 8;
+    private static final int MAX_NAME_BYTES = RECORD_SIZE - 6; // After the score and the name length
+    private static final int RECORDS_PER_MAPPING = Integer.MAX_VALUE / RECORD_SIZE;
+    private static final int WRITE_BATCH_SIZE = 512;
+    private static final int POINTER_FORMAT_VERSION = 1;
+    private static final int POINTER_SIZE = 16;
+    private static final String FILE_SUFFIX = ".snap";
+
+    private final Path path;
+    private final long generation;
+    private final int entryCount;
+    private final int[] indexScores, indexCounts;
+    private final MappedByteBuffer[] recordMappings;
+
+    private HighScoreSnapshot(Path path, long generation, int entryCount, int[] indexScores, int[] indexCounts, MappedByteBuffer[] recordMappings)
+    {
+        this.path = path;
+        this.generation = generation;
+        this.entryCount = entryCount;
+        this.indexScores = indexScores;
+        this.indexCounts = indexCounts;
+        this.recordMappings = recordMappings;
+    }
+
+    /**
+     * Returns the generation of the last high score log this snapshot holds the records of.
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    public int getEntryCount()
+    {
+        return entryCount;
+    }
+
+    /**
+     * Returns the number of distinct scores in the index.
+     */
+    public int getIndexSize()
+    {
+        return indexScores.length;
+    }
+
+    /**
+     * Returns the index-th highest distinct score in the snapshot.
+     */
+    public int getIndexScore(int index)
+    {
+        return indexScores[index];
+    }
+
+    /**
+     * Returns how many entries have the index-th highest distinct score.
+     */
+    public int getIndexCount(int index)
+    {
+        return indexCounts[index];
+    }
+
+    /**
+     * Decodes the entry at the given position in rank order, counted from 0. Safe to call from several threads.
+     * Records are only checked when they are read, a damaged one throws an UncheckedIOException.
+     */
+    public HighScore read(int record)
+    {
+        MappedByteBuffer mapping = recordMappings[record / RECORDS_PER_MAPPING];
+        int offset = (record % RECORDS_PER_MAPPING) * RECORD_SIZE;
+
+        int score = mapping.getInt(offset);
+        int nameLength = mapping.getShort(offset + 4);
+
+        if (nameLength < 0 || nameLength > MAX_NAME_BYTES)
+        {
+            throw new UncheckedIOException(new IOException("The high score snapshot " + path + " is damaged."));
+        }
+        byte[] name = new byte[nameLength];
+
+        for (int i = 0; i < nameLength; i++)
+        {
+            name[i] = mapping.get(offset + 6 + i);
+        }
+
+        return new HighScore(new String(name, StandardCharsets.UTF_8), score);
+    }
+
+    /**
+     * Returns the file the snapshot of the given generation belongs in.
+     */
+    public static Path getPath(Path highScorePath, long generation)
+    {
+        return highScorePath.resolveSibling(highScorePath.getFileName() + "." + generation + FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the generations of all the snapshot files next to the high score file, in ascending order.
+     */
+    public static long[] findGenerations(Path highScorePath) throws IOException
+    {
+        return HighScoreLog.findGenerations(highScorePath, FILE_SUFFIX);
+    }
+
+    /**
+     * Returns true if the file starts like a binary snapshot, as opposed to a pointer or the older text format.
+     * High score files were whole snapshots before each generation had a file of its own.
+     */
+    public static boolean isSnapshot(Path path) throws IOException
+    {
+        return readMagic(path) == MAGIC;
+    }
+
+    /**
+     * Returns true if the file starts like a pointer to the current snapshot.
+     */
+    public static boolean isPointer(Path path) throws IOException
+    {
+        return readMagic(path) == POINTER_MAGIC;
+    }
+
+    private static int readMagic(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+
+            while (magic.hasRemaining() && channel.read(magic) >= 0)
+            {
+                // Keep reading
+            }
+
+            return magic.hasRemaining() ? 0 : magic.getInt(0);
+        }
+    }
+
+    /**
+     * Returns the generation of the snapshot the pointer file points at.
+     */
+    public static long readPointer(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() != POINTER_SIZE)
+            {
+                throw new IOException("The high score file " + path + " is damaged.");
+            }
+
+            ByteBuffer pointer = ByteBuffer.allocate(POINTER_SIZE);
+            readFully(channel, pointer, 0);
+            pointer.flip();
+
+            if (pointer.getInt() != POINTER_MAGIC)
+            {
+                throw new IOException("The file " + path + " is not a high score file.");
+            }
+
+            int version = pointer.getInt();
+
+            if (version != POINTER_FORMAT_VERSION)
+            {
+                throw new IOException("The high score file " + path + " has an unsupported format version (" + version + ").");
+            }
+
+            return pointer.getLong();
+        }
+    }
+
+    /**
+     * Writes a pointer to the snapshot of the given generation and syncs it before returning.
+     */
+    public static void writePointer(Path path, long generation) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer pointer = ByteBuffer.allocate(POINTER_SIZE);
+            pointer.putInt(POINTER_MAGIC).putInt(POINTER_FORMAT_VERSION).putLong(generation);
+            pointer.flip();
+            writeFully(channel, pointer, 0);
+
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Returns the generation of the snapshot from its header alone, without mapping the file.
+     */
+    public static long readGeneration(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return readHeader(channel, path).getLong();
+        }
+    }
+
+    public static HighScoreSnapshot open(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer header = readHeader(channel, path);
+
+            long generation = header.getLong();
+            int entryCount = header.getInt();
+            int distinctScoreCount = header.getInt();
+
+            long indexOffset = HEADER_SIZE + (long)entryCount * RECORD_SIZE;
+
+            if (entryCount < 0 || distinctScoreCount < 0 || distinctScoreCount > entryCount
+                || channel.size() != indexOffset + (long)distinctScoreCount * INDEX_ENTRY_SIZE)
+            {
+                throw new IOException("The high score snapshot " + path + " is damaged.");
+            }
+
+            ByteBuffer index = ByteBuffer.allocate(distinctScoreCount * INDEX_ENTRY_SIZE);
+            readFully(channel, index, indexOffset);
+            index.flip();
+
+            int[] indexScores = new int[distinctScoreCount], indexCounts = new int[distinctScoreCount];
+            long indexedEntryCount = 0;
+
+            for (int i = 0; i < distinctScoreCount; i++)
+            {
+                indexScores[i] = index.getInt();
+                indexCounts[i] = index.getInt();
+                indexedEntryCount += indexCounts[i];
+
+                // Scores must be in range and strictly descending, and every score must have an entry
+                if (!Leaderboard.isValidScore(indexScores[i]) || i > 0 && indexScores[i] >= indexScores[i - 1] || indexCounts[i] <= 0)
+                {
+                    throw new IOException("The high score snapshot " + path + " is damaged.");
+                }
+            }
+
+            if (indexedEntryCount != entryCount)
+            {
+                throw new IOException("The high score snapshot " + path + " is damaged.");
+            }
+
+            MappedByteBuffer[] recordMappings = new MappedByteBuffer[(entryCount + RECORDS_PER_MAPPING - 1) / RECORDS_PER_MAPPING];
+
+            for (int i = 0; i < recordMappings.length; i++)
+            {
+                int mappedRecords = Math.min(RECORDS_PER_MAPPING, entryCount - i * RECORDS_PER_MAPPING);
+
+                recordMappings[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + (long)i * RECORDS_PER_MAPPING * RECORD_SIZE, (long)mappedRecords * RECORD_SIZE);
+            }
+
+            return new HighScoreSnapshot(path, generation, entryCount, indexScores, indexCounts, recordMappings);
+        }
+    }
+
+    /**
+     * Writes every entry of the leaderboard to a new snapshot file and syncs it before returning.
+     * Names that don't fit in a record are cut short.
+     */
+    public static void write(Path path, Leaderboard leaderboard, long generation) throws IOException
+    {
+        int entryCount = leaderboard.size();
+        int[] indexScores = new int[16], indexCounts = new int[16];
+        int distinctScoreCount = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BATCH_SIZE * RECORD_SIZE);
+            long position = HEADER_SIZE;
+
+            for (int rank = 1; rank <= entryCount; rank += WRITE_BATCH_SIZE)
+            {
+                HighScore[] highScores = leaderboard.getPage(rank, WRITE_BATCH_SIZE);
+
+                buffer.clear();
+
+                for (HighScore highScore : highScores)
+                {
+                    if (distinctScoreCount == 0 || indexScores[distinctScoreCount - 1] != highScore.score)
+                    {
+                        if (distinctScoreCount == indexScores.length)
+                        {
+                            indexScores = Arrays.copyOf(indexScores, distinctScoreCount * 2);
+                            indexCounts = Arrays.copyOf(indexCounts, distinctScoreCount * 2);
+                        }
+
+                        indexScores[distinctScoreCount] = highScore.score;
+                        indexCounts[distinctScoreCount] = 0;
+                        distinctScoreCount++;
+                    }
+
+                    indexCounts[distinctScoreCount - 1]++;
+
+                    byte[] name = encodeName(highScore.name);
+                    int recordStart = buffer.position();
+
+                    buffer.putInt(highScore.score);
+                    buffer.putShort((short)name.length);
+                    buffer.put(name);
+
+                    while (buffer.position() < recordStart + RECORD_SIZE)
+                    {
+                        buffer.put((byte)0);
+                    }
+                }
+
+                buffer.flip();
+                position += writeFully(channel, buffer, position);
+            }
+
+            ByteBuffer index = ByteBuffer.allocate(distinctScoreCount * INDEX_ENTRY_SIZE);
+
+            for (int i = 0; i < distinctScoreCount; i++)
+            {
+                index.putInt(indexScores[i]).putInt(indexCounts[i]);
+            }
+
+            index.flip();
+            writeFully(channel, index, position);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(generation).putInt(entryCount).putInt(distinctScoreCount);
+            header.clear(); // The unused rest of the header stays zeroed
+            writeFully(channel, header, 0);
+
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads and checks the header up to the generation, which the returned buffer is positioned at.
+     */
+    private static ByteBuffer readHeader(FileChannel channel, Path path) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+
+        if (header.getInt() != MAGIC)
+        {
+            throw new IOException("The file " + path + " is not a high score snapshot.");
+        }
+
+        int version = header.getInt();
+
+        if (version != FORMAT_VERSION)
+        {
+            throw new IOException("The high score snapshot " + path + " has an unsupported format version (" + version + ").");
+        }
+
+        return header;
+    }
+
+    private static byte[] encodeName(String name)
+    {
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        int length = name.length();
+
+        while (encodedName.length > MAX_NAME_BYTES)
+        {
+            length--;
+
+            if (Character.isLowSurrogate(name.charAt(length)))
+            {
+                length--;
+            }
+
+            encodedName = name.substring(0, length).getBytes(StandardCharsets.UTF_8);
+        }
+
+        return encodedName;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("The high score snapshot ended unexpectedly.");
+            }
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        int length = buffer.remaining();
+
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer, position + buffer.position());
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,253 @@
+package score;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps a separate leaderboard for every game mode, each one a HighScoreManager with files of its own. The
+ * default game mode uses the high score file itself, so high scores from before there were game modes stay on
+ * its board, and every other game mode uses a file named after the key of the mode, e.g.
+ * "highscores-nowalls-75x50-50ms.dat". All the managers share one persistence thread.
+ *
+ * A score only touches the leaderboard, the log and the cached top of its own game mode, and as every board
+ * known on disk is loaded up front, switching between boards only reads their caches.
+ */
+public class HighScoreStore
+{
+    public final String HIGH_SCORE_FILE_PATH = "data\\highscores.dat";
+
+    private final String MODE_SEPARATOR = "-";
+
+    private final GameMode defaultGameMode;
+    private final Path defaultFilePath;
+    private final String filePrefix, fileSuffix;
+    private final ExecutorService persistenceExecutor = HighScoreManager.createPersistenceExecutor();
+    private final HashMap<GameMode, HighScoreManager> highScoreMngrs = new HashMap<GameMode, HighScoreManager>();
+
+    private Thread shutdownHook;
+
+    public HighScoreStore(GameMode defaultGameMode)
+    {
+        this(defaultGameMode, null);
+    }
+
+    /**
+     * Keeps the high scores next to the given file instead of the default one, e.g. for benchmarks.
+     */
+    public HighScoreStore(GameMode defaultGameMode, String highScoreFilePath)
+    {
+        this.defaultGameMode = defaultGameMode;
+        this.defaultFilePath = Paths.get(highScoreFilePath != null ? highScoreFilePath : HIGH_SCORE_FILE_PATH);
+
+        String fileName = defaultFilePath.getFileName().toString();
+        int extensionStart = fileName.lastIndexOf('.');
+
+        this.filePrefix = (extensionStart > 0 ? fileName.substring(0, extensionStart) : fileName) + MODE_SEPARATOR;
+        this.fileSuffix = extensionStart > 0 ? fileName.substring(extensionStart) : "";
+    }
+
+    public GameMode getDefaultGameMode()
+    {
+        return defaultGameMode;
+    }
+
+    /**
+     * Returns the file the high scores of the game mode are kept in.
+     */
+    public String getHighScoreFilePath(GameMode gameMode)
+    {
+        if (gameMode.equals(defaultGameMode))
+        {
+            return defaultFilePath.toString();
+        }
+
+        return defaultFilePath.resolveSibling(filePrefix + gameMode.getKey() + fileSuffix).toString();
+    }
+
+    /**
+     * Returns the high scores of the game mode, starting an empty board for a game mode that has none yet.
+     * Boards on disk are only there once loadHighScoresAsync() has completed.
+     */
+    public synchronized HighScoreManager getHighScoreManager(GameMode gameMode)
+    {
+        HighScoreManager highScoreMngr = highScoreMngrs.get(gameMode);
+
+        if (highScoreMngr == null)
+        {
+            highScoreMngr = new HighScoreManager(getHighScoreFilePath(gameMode), persistenceExecutor);
+            highScoreMngrs.put(gameMode, highScoreMngr);
+        }
+
+        return highScoreMngr;
+    }
+
+    /**
+     * Returns the game modes that have a board, the default one included, in the order of GameMode.compareTo().
+     */
+    public synchronized GameMode[] getGameModes()
+    {
+        getHighScoreManager(defaultGameMode);
+
+        GameMode[] gameModes = highScoreMngrs.keySet().toArray(new GameMode[0]);
+        Arrays.sort(gameModes);
+
+        return gameModes;
+    }
+
+    /**
+     * Finds the boards of every game mode on disk and loads them on the persistence thread, the returned future
+     * completes once all of them are loaded. A board that fails to load doesn't keep the others from loading,
+     * the future then completes with the first error.
+     */
+    public CompletableFuture<Void> loadHighScoresAsync()
+    {
+        CompletableFuture<Void> load = new CompletableFuture<Void>();
+
+        persistenceExecutor.execute(() -> {
+            Exception firstError = null;
+
+            try
+            {
+                for (GameMode gameMode : findGameModes())
+                {
+                    getHighScoreManager(gameMode);
+                }
+            }
+            catch (IOException ex)
+            {
+                firstError = ex;
+            }
+
+            for (GameMode gameMode : getGameModes())
+            {
+                try
+                {
+                    getHighScoreManager(gameMode).loadHighScores();
+                }
+                catch (Exception ex)
+                {
+                    if (firstError == null)
+                    {
+                        firstError = ex;
+                    }
+                }
+            }
+
+            if (firstError == null)
+            {
+                load.complete(null);
+            }
+            else
+            {
+                load.completeExceptionally(firstError);
+            }
+        });
+
+        return load;
+    }
+
+    /**
+     * Returns the game modes other than the default one that have a high score file.
+     */
+    private ArrayList<GameMode> findGameModes() throws IOException
+    {
+        Path directory = defaultFilePath.toAbsolutePath().getParent();
+        ArrayList<GameMode> gameModes = new ArrayList<GameMode>();
+
+        if (!Files.isDirectory(directory))
+        {
+            return gameModes;
+        }
+
+        // Matched by hand rather than with a glob, the file name may hold characters a glob treats specially
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory))
+        {
+            for (Path path : paths)
+            {
+                String fileName = path.getFileName().toString();
+
+                if (fileName.length() > filePrefix.length() + fileSuffix.length() && fileName.startsWith(filePrefix) && fileName.endsWith(fileSuffix))
+                {
+                    GameMode gameMode = GameMode.fromKey(fileName.substring(filePrefix.length(), fileName.length() - fileSuffix.length()));
+
+                    if (gameMode != null && !gameMode.equals(defaultGameMode))
+                    {
+                        gameModes.add(gameMode);
+                    }
+                }
+            }
+        }
+
+        return gameModes;
+    }
+
+    /**
+     * Waits for the loads and saves already asked for, then closes every board once everything logged is on disk.
+     */
+    public void close() throws IOException
+    {
+        HighScoreManager.shutdownPersistenceExecutor(persistenceExecutor);
+
+        HighScoreManager[] closingMngrs;
+
+        synchronized (this)
+        {
+            closingMngrs = highScoreMngrs.values().toArray(new HighScoreManager[0]);
+        }
+
+        IOException firstError = null;
+
+        for (HighScoreManager highScoreMngr : closingMngrs)
+        {
+            try
+            {
+                highScoreMngr.close();
+            }
+            catch (IOException ex)
+            {
+                if (firstError == null)
+                {
+                    firstError = ex;
+                }
+            }
+        }
+
+        if (firstError != null)
+        {
+            throw firstError;
+        }
+    }
+
+    /**
+     * Closes the store when the program exits, e.g. through System.exit(), so scores that are still being saved
+     * make it to the disk.
+     */
+    public synchronized void closeOnExit()
+    {
+        if (shutdownHook != null)
+        {
+            return;
+        }
+
+        shutdownHook = new Thread(() -> {
+            try
+            {
+                close();
+            }
+            catch (IOException ex)
+            {
+                // The program is exiting, there is nowhere left to report this
+            }
+        }, "High score shutdown");
+
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+}
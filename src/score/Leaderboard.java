@@ -0,0 +1,317 @@
+package score;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps every submitted score ordered from the highest to the lowest, where among equal scores the newest one
+ * comes first. Scores are counted per score value in a Fenwick tree, so adding a score, finding the rank a score
+ * would get and finding the entry at a rank all take O(log m) time, m being the highest score seen so far.
+ * Ranks start at 1. As the memory taken grows with m rather than with the number of entries, scores are
+ * limited to MAX_SCORE, which is far more than a snake filling the largest board can score.
+ *
+ * A leaderboard can start out from a HighScoreSnapshot, in which case only the snapshot's index of score counts
+ * is read up front and its entries stay in the snapshot until they are asked for.
+ */
+public class Leaderboard
+{
+    public static final int MAX_SCORE = (1 << 20) - 1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] scoreCountTree; // Fenwick tree where index score + 1 counts the entries with that score
+    private ArrayList<HighScore>[] scoreBuckets; // The entries added with each score, oldest first
+    private HighScoreSnapshot snapshot;
+    private int[] snapshotCounts, snapshotFirstRecords; // The number of entries with each score in the snapshot and where the newest of them is
+    private int capacity, size;
+
+    public Leaderboard()
+    {
+        clear();
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void clear()
+    {
+        capacity = INITIAL_CAPACITY;
+        scoreCountTree = new int[capacity + 1];
+        scoreBuckets = new ArrayList[capacity];
+        snapshot = null;
+        snapshotCounts = null;
+        snapshotFirstRecords = null;
+        size = 0;
+    }
+
+    /**
+     * Replaces the contents of the leaderboard with the entries of the snapshot, taking O(m) time however many entries it has.
+     */
+    public void load(HighScoreSnapshot snapshot)
+    {
+        clear();
+
+        int indexSize = snapshot.getIndexSize();
+
+        if (indexSize > 0 && snapshot.getIndexScore(0) >= capacity)
+        {
+            grow(snapshot.getIndexScore(0));
+        }
+
+        this.snapshot = snapshot;
+        snapshotCounts = new int[capacity];
+        snapshotFirstRecords = new int[capacity];
+
+        int record = 0;
+
+        for (int i = 0; i < indexSize; i++)
+        {
+            int score = snapshot.getIndexScore(i);
+
+            snapshotCounts[score] = snapshot.getIndexCount(i);
+            snapshotFirstRecords[score] = record;
+            record += snapshotCounts[score];
+        }
+
+        size = snapshot.getEntryCount();
+        rebuildTree();
+    }
+
+    /**
+     * Returns a leaderboard with the same entries that changes independently of this one. Entries still in a
+     * snapshot stay there, the snapshot is shared since it never changes.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Leaderboard copy()
+    {
+        Leaderboard copy = new Leaderboard();
+
+        copy.capacity = capacity;
+        copy.size = size;
+        copy.scoreCountTree = scoreCountTree.clone();
+        copy.scoreBuckets = new ArrayList[capacity];
+
+        for (int i = 0; i < capacity; i++)
+        {
+            if (scoreBuckets[i] != null)
+            {
+                copy.scoreBuckets[i] = new ArrayList<HighScore>(scoreBuckets[i]);
+            }
+        }
+
+        if (snapshot != null)
+        {
+            copy.snapshot = snapshot;
+            copy.snapshotCounts = snapshotCounts.clone();
+            copy.snapshotFirstRecords = snapshotFirstRecords.clone();
+        }
+
+        return copy;
+    }
+
+    /**
+     * Adds a score and returns the rank it got, which is the rank getRank() returned for it just before.
+     */
+    public int add(String name, int score)
+    {
+        if (!isValidScore(score))
+        {
+            throw new IllegalArgumentException("A score must be between 0 and " + MAX_SCORE + ".");
+        }
+
+        if (score >= capacity)
+        {
+            grow(score);
+        }
+
+        if (scoreBuckets[score] == null)
+        {
+            scoreBuckets[score] = new ArrayList<HighScore>();
+        }
+
+        int rank = getRank(score);
+
+        scoreBuckets[score].add(new HighScore(name, score));
+        size++;
+
+        for (int i = score + 1; i <= capacity; i += i & -i)
+        {
+            scoreCountTree[i]++;
+        }
+
+        return rank;
+    }
+
+    public static boolean isValidScore(int score)
+    {
+        return score >= 0 && score <= MAX_SCORE;
+    }
+
+    /**
+     * Returns the rank a new entry with the given score would get, one more than the number of strictly higher scores.
+     */
+    public int getRank(int score)
+    {
+        return countScoresAbove(score) + 1;
+    }
+
+    public int countScoresAbove(int score)
+    {
+        return size - countScoresUpTo(score);
+    }
+
+    /**
+     * Returns the entry at the given rank, or null if there are fewer entries than that.
+     */
+    public HighScore get(int rank)
+    {
+        if (rank < 1 || rank > size)
+        {
+            return null;
+        }
+
+        int position = size - rank; // Counted from the lowest score up
+        int score = findScoreAt(position);
+
+        return getBucketEntry(score, position - countScoresUpTo(score - 1));
+    }
+
+    /**
+     * Returns the highest entries, at most count of them.
+     */
+    public HighScore[] getTop(int count)
+    {
+        return getPage(1, count);
+    }
+
+    /**
+     * Returns up to count entries in rank order starting at the given rank. Jumps from one score to the next
+     * lower one through the tree, so a page costs O(log m) per distinct score on it, however sparse the scores are.
+     */
+    public HighScore[] getPage(int fromRank, int count)
+    {
+        if (fromRank < 1 || count < 0)
+        {
+            throw new IllegalArgumentException("The rank must be at least 1 and the count cannot be negative.");
+        }
+
+        int pageSize = Math.max(0, Math.min(count, size - fromRank + 1));
+        HighScore[] page = new HighScore[pageSize];
+
+        int position = size - fromRank;
+        int score = 0, bucketIndex = -1;
+
+        for (int i = 0; i < pageSize; i++, position--)
+        {
+            if (bucketIndex < 0)
+            {
+                score = findScoreAt(position);
+                bucketIndex = position - countScoresUpTo(score - 1);
+            }
+
+            page[i] = getBucketEntry(score, bucketIndex--);
+        }
+
+        return page;
+    }
+
+    /**
+     * Returns the entry with the given score at the given index, oldest first. Entries from the snapshot are
+     * older than any added since, and the snapshot stores the newest of equal scores first.
+     */
+    private HighScore getBucketEntry(int score, int bucketIndex)
+    {
+        int snapshotCount = snapshot != null ? snapshotCounts[score] : 0;
+
+        if (bucketIndex < snapshotCount)
+        {
+            return snapshot.read(snapshotFirstRecords[score] + snapshotCount - 1 - bucketIndex);
+        }
+
+        return scoreBuckets[score].get(bucketIndex - snapshotCount);
+    }
+
+    private int getBucketSize(int score)
+    {
+        return (scoreBuckets[score] != null ? scoreBuckets[score].size() : 0) + (snapshot != null ? snapshotCounts[score] : 0);
+    }
+
+    private int countScoresUpTo(int score)
+    {
+        int count = 0;
+
+        for (int i = Math.min(score + 1, capacity); i > 0; i -= i & -i)
+        {
+            count += scoreCountTree[i];
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the score of the entry at the given position, counted from 0 at the lowest score up.
+     */
+    private int findScoreAt(int position)
+    {
+        int index = 0;
+        int remaining = position;
+
+        for (int step = capacity; step > 0; step >>= 1)
+        {
+            if (index + step <= capacity && scoreCountTree[index + step] <= remaining)
+            {
+                index += step;
+                remaining -= scoreCountTree[index];
+            }
+        }
+
+        return index; // The first tree index whose prefix count exceeds position is index + 1, i.e. this score
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void grow(int score)
+    {
+        int newCapacity = capacity;
+
+        while (newCapacity <= score) // Stops at MAX_SCORE + 1 at the most
+        {
+            newCapacity *= 2;
+        }
+
+        ArrayList<HighScore>[] newScoreBuckets = new ArrayList[newCapacity];
+        System.arraycopy(scoreBuckets, 0, newScoreBuckets, 0, capacity);
+        scoreBuckets = newScoreBuckets;
+
+        if (snapshot != null)
+        {
+            snapshotCounts = Arrays.copyOf(snapshotCounts, newCapacity);
+            snapshotFirstRecords = Arrays.copyOf(snapshotFirstRecords, newCapacity);
+        }
+
+        capacity = newCapacity;
+        rebuildTree();
+    }
+
+    /**
+     * Rebuilds the tree from the bucket sizes in O(m) by pushing each node's count up to its parent.
+     */
+    private void rebuildTree()
+    {
+        scoreCountTree = new int[capacity + 1];
+
+        for (int i = 1; i <= capacity; i++)
+        {
+            scoreCountTree[i] += getBucketSize(i - 1);
+
+            int parent = i + (i & -i);
+
+            if (parent <= capacity)
+            {
+                scoreCountTree[parent] += scoreCountTree[i];
+            }
+        }
+    }
+}
@@ -1,27 +1,31 @@
 package windows;
 
+import score.GameMode;
 import score.HighScore;
 import score.HighScoreManager;
+import score.HighScoreStore;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.IOException;
 
 public class HighScoresWindow extends JDialog
 {
     private static final String WINDOW_TITLE = "High Scores";
     private final String EMPTY_NAME_VALUE = "-";
 
+    private HighScoreStore highScoreStore;
     private HighScoreManager highScoreMngr;
+    private GameMode gameMode;
     private ButtonListener btnListener;
 
     private JButton okBtn, clearHighScoresBtn;
     private JLabel windowTitleLbl, rankTitleLbl, nameTitleLbl, scoreTitleLbl;
+    private JComboBox<GameMode> gameModeComboBox;
     private HighScoreRow[] highScoreRows;
-    private JPanel highScoresPnl, buttonsPnl;
+    private JPanel titlePnl, highScoresPnl, buttonsPnl;
 
     private class ButtonListener implements ActionListener
     {
@@ -33,23 +37,30 @@ public class HighScoresWindow extends JDialog
                 dispose();
             }
 
+            if (e.getSource() == gameModeComboBox)
+            {
+                gameMode = (GameMode)gameModeComboBox.getSelectedItem();
+                highScoreMngr = highScoreStore.getHighScoreManager(gameMode);
+                updateHighScoreRows();
+            }
+
             if (e.getSource() == clearHighScoresBtn)
             {
                 int result = JOptionPane.showConfirmDialog(null, "Are you sure you want to clear the high scores? This action cannot be undone.", "Confirm", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
             
                 if (result ==  JOptionPane.YES_OPTION)
                 {
-                    highScoreMngr.clearHighScoresLeaderboard();
+                    HighScoreManager clearedMngr = highScoreMngr;
+
+                    clearedMngr.clearHighScoresLeaderboard();
                     updateHighScoreRows();
 
-                    try
-                    {
-                        highScoreMngr.saveHighScores();
-                    }
-                    catch (IOException ex)
-                    {
-                        JOptionPane.showMessageDialog(null, "An error occured while trying to save the high score file (" + highScoreMngr.HIGH_SCORE_FILE_PATH + ").\n\nError Message: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                    clearedMngr.saveHighScoresAsync().whenComplete((saved, ex) -> {
+                        if (ex != null)
+                        {
+                            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "An error occured while trying to save the high score file (" + clearedMngr.getHighScoreFilePath() + ").\n\nError Message: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                        }
+                    });
                 }
             }
         }
@@ -77,11 +88,16 @@ public class HighScoresWindow extends JDialog
         }
     }
 
-    public HighScoresWindow(JFrame parentFrame, HighScoreManager highScoreMngr)
+    /**
+     * Shows the board of the given game mode first, the boards of the other game modes can be picked from a list.
+     */
+    public HighScoresWindow(JFrame parentFrame, HighScoreStore highScoreStore, GameMode gameMode)
     {
         super(parentFrame, WINDOW_TITLE, true);
 
-        this.highScoreMngr = highScoreMngr;
+        this.highScoreStore = highScoreStore;
+        this.highScoreMngr = highScoreStore.getHighScoreManager(gameMode);
+        this.gameMode = gameMode;
 
         setupWindow();
     }
@@ -106,7 +122,17 @@ public class HighScoresWindow extends JDialog
         windowTitleLbl.setFont(titleFont);
         windowTitleLbl.setBorder(new EmptyBorder(15, 15, 0, 15));
 
-        this.add(windowTitleLbl, BorderLayout.NORTH);
+        // Listed after getHighScoreManager() so the game mode being shown is always among them
+        gameModeComboBox = new JComboBox<GameMode>(highScoreStore.getGameModes());
+        gameModeComboBox.setSelectedItem(gameMode);
+
+        titlePnl = new JPanel();
+        titlePnl.setLayout(new BorderLayout(0, 10));
+        titlePnl.setBorder(new EmptyBorder(0, 0, 0, 15));
+        titlePnl.add(windowTitleLbl, BorderLayout.NORTH);
+        titlePnl.add(gameModeComboBox, BorderLayout.EAST);
+
+        this.add(titlePnl, BorderLayout.NORTH);
     }
 
     private void setupHighScorePnl()
@@ -145,6 +171,7 @@ public class HighScoresWindow extends JDialog
 
         okBtn.addActionListener(btnListener);
         clearHighScoresBtn.addActionListener(btnListener);
+        gameModeComboBox.addActionListener(btnListener);
 
         buttonsPnl.add(okBtn);
         buttonsPnl.add(clearHighScoresBtn);
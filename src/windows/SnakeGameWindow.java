@@ -2,9 +2,13 @@ package windows;
 
 import adapter.MenuAdapter;
 import game.Direction;
+import game.Replay;
 import game.SnakeGameContainer;
 import game.SnakeGameContainerListener;
+import game.Theme;
+import score.GameMode;
 import score.HighScoreManager;
+import score.HighScoreStore;
 
 import javax.swing.*;
 import javax.swing.event.MenuEvent;
@@ -13,23 +17,36 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 public class SnakeGameWindow extends JFrame implements SnakeGameContainerListener
 {
     private static final String WINDOW_TITLE = "Snake";
     private final Color BG_COLOUR = new Color(0, 0, 0);
     private final int WINDOW_HEIGHT = 400, WINDOW_WIDTH = 400;
+    private final double[] REPLAY_SPEEDS = { 0.5, 1, 2, 4, 8 };
 
     private WindowKeyListener keyListener;
     private MainMenuListener menuListener;
+    private WindowCloseListener closeListener;
 
     private JMenuBar menuBar;
-    private JMenu fileMenu, helpMenu;
+    private JMenu fileMenu, viewMenu, themeMenu, replayMenu, replaySpeedMenu, helpMenu;
     private JMenuItem newGameMenuItem, highScoresMenuItem, closeMenuItem,aboutMenuItem;
+    private JMenuItem replayLastGameMenuItem, skipReplayMenuItem, saveReplayMenuItem, openReplayMenuItem;
+    private JCheckBoxMenuItem activeRenderingMenuItem, smoothMovementMenuItem, debugHudMenuItem;
+    private JRadioButtonMenuItem[] themeMenuItems, replaySpeedMenuItems;
+    private Theme[] themes = Theme.getThemes();
 
     private SnakeGameContainer snakeGame;
-    private HighScoreManager highScoreMngr;
+    private HighScoreStore highScoreStore;
 
     private class MainMenuListener extends MenuAdapter implements ActionListener
     {
@@ -48,12 +65,73 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
 
             if (e.getSource() == highScoresMenuItem)
             {
-                showHighScoreWindow();
+                Replay lastReplay = snakeGame.getLastReplay();
+
+                showHighScoreWindow(lastReplay != null ? getGameMode(lastReplay) : highScoreStore.getDefaultGameMode());
             }
 
             if (e.getSource() == closeMenuItem)
             {
-                System.exit(0);
+                // Goes through the same path as closing the window, which exits once the game has shut down
+                dispatchEvent(new WindowEvent(SnakeGameWindow.this, WindowEvent.WINDOW_CLOSING));
+            }
+
+            if (e.getSource() == activeRenderingMenuItem)
+            {
+                snakeGame.setActiveRendering(activeRenderingMenuItem.isSelected());
+            }
+
+            if (e.getSource() == smoothMovementMenuItem)
+            {
+                snakeGame.setSmoothMovement(smoothMovementMenuItem.isSelected());
+            }
+
+            if (e.getSource() == debugHudMenuItem)
+            {
+                snakeGame.setDebugHudVisible(debugHudMenuItem.isSelected());
+            }
+
+            for (int i = 0; i < themeMenuItems.length; i++)
+            {
+                if (e.getSource() == themeMenuItems[i])
+                {
+                    snakeGame.setTheme(themes[i]);
+                }
+            }
+
+            if (e.getSource() == replayLastGameMenuItem)
+            {
+                if (snakeGame.getLastReplay() != null)
+                {
+                    snakeGame.playReplay(snakeGame.getLastReplay());
+                }
+                else
+                {
+                    JOptionPane.showMessageDialog(null, "There is no finished game to replay yet.", "Replay", JOptionPane.INFORMATION_MESSAGE);
+                }
+            }
+
+            if (e.getSource() == skipReplayMenuItem)
+            {
+                snakeGame.skipReplayToEnd();
+            }
+
+            if (e.getSource() == saveReplayMenuItem)
+            {
+                saveLastReplay();
+            }
+
+            if (e.getSource() == openReplayMenuItem)
+            {
+                openReplay();
+            }
+
+            for (int i = 0; i < replaySpeedMenuItems.length; i++)
+            {
+                if (e.getSource() == replaySpeedMenuItems[i])
+                {
+                    snakeGame.setReplaySpeed(REPLAY_SPEEDS[i]);
+                }
             }
 
             if (e.getSource() == aboutMenuItem)
@@ -72,6 +150,15 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
         }
     }
 
+    private class WindowCloseListener extends WindowAdapter
+    {
+        @Override
+        public void windowClosing(WindowEvent e)
+        {
+            snakeGame.shutdown();
+        }
+    }
+
     private class WindowKeyListener extends KeyAdapter
     {
         @Override
@@ -95,6 +182,10 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
                 case KeyEvent.VK_RIGHT:
                     snakeGame.setSnakeDirection(Direction.Right);
                     break;
+                case KeyEvent.VK_F3:
+                    snakeGame.setDebugHudVisible(!snakeGame.isDebugHudVisible());
+                    debugHudMenuItem.setSelected(snakeGame.isDebugHudVisible());
+                    break;
                 case KeyEvent.VK_P:
                     if (snakeGame.isGameStarted())
                     {
@@ -126,12 +217,13 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
         this.setResizable(false);
 
         initListeners();
-        initHighScoreManager();
         setupMenuBar();
         setupSnakeGameContainer();
+        initHighScoreStore();
         updateTitleWithScore();
 
         this.addKeyListener(keyListener);
+        this.addWindowListener(closeListener);
         this.pack();
         this.setLocationRelativeTo(null);
         this.setVisible(true);
@@ -141,20 +233,31 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
     {
         keyListener = new WindowKeyListener();
         menuListener = new MainMenuListener();
+        closeListener = new WindowCloseListener();
     }
 
-    private void initHighScoreManager()
+    /**
+     * Must be called once the game container exists, the game mode it starts in is the default one.
+     */
+    private void initHighScoreStore()
     {
-        highScoreMngr = new HighScoreManager();
+        highScoreStore = new HighScoreStore(GameMode.fromTickRate(snakeGame.hasWallCollision(), snakeGame.getBoardColumns(), snakeGame.getBoardRows(), snakeGame.getTickRate()));
+        highScoreStore.closeOnExit();
 
-        try
-        {
-            highScoreMngr.loadHighScores();
-        }
-        catch (Exception ex)
-        {
-            JOptionPane.showMessageDialog(null, "An error occured while trying to load the high score file (" + highScoreMngr.HIGH_SCORE_FILE_PATH + ").\n\nError Message: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        highScoreStore.loadHighScoresAsync().whenComplete((loaded, ex) -> {
+            if (ex != null)
+            {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "An error occured while trying to load the high score files.\n\nError Message: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+            }
+        });
+    }
+
+    /**
+     * Returns the game mode the recorded game was played in.
+     */
+    private GameMode getGameMode(Replay replay)
+    {
+        return GameMode.fromTickRate(replay.hasWallCollision(), replay.getMapWidth() / replay.getCellSize(), replay.getMapHeight() / replay.getCellSize(), replay.getTickRate());
     }
 
     private void setupMenuBar()
@@ -170,19 +273,89 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
         fileMenu.add(new JSeparator());
         fileMenu.add(closeMenuItem);
 
+        viewMenu = new JMenu("View");
+        activeRenderingMenuItem = new JCheckBoxMenuItem("Active Rendering");
+        smoothMovementMenuItem = new JCheckBoxMenuItem("Smooth Movement", true);
+        viewMenu.add(activeRenderingMenuItem);
+        debugHudMenuItem = new JCheckBoxMenuItem("Debug HUD (F3)");
+        viewMenu.add(smoothMovementMenuItem);
+        viewMenu.add(debugHudMenuItem);
+
+        themeMenu = new JMenu("Theme");
+        themeMenuItems = new JRadioButtonMenuItem[themes.length];
+        ButtonGroup themeButtonGroup = new ButtonGroup();
+
+        for (int i = 0; i < themes.length; i++)
+        {
+            themeMenuItems[i] = new JRadioButtonMenuItem(themes[i].getName(), i == 0);
+            themeButtonGroup.add(themeMenuItems[i]);
+            themeMenu.add(themeMenuItems[i]);
+        }
+
+        viewMenu.add(new JSeparator());
+        viewMenu.add(themeMenu);
+
+        replayMenu = new JMenu("Replay");
+        replayLastGameMenuItem = new JMenuItem("Replay Last Game");
+        skipReplayMenuItem = new JMenuItem("Skip to End");
+        saveReplayMenuItem = new JMenuItem("Save Last Replay...");
+        openReplayMenuItem = new JMenuItem("Open Replay...");
+        replayMenu.add(replayLastGameMenuItem);
+        replayMenu.add(skipReplayMenuItem);
+        replayMenu.add(new JSeparator());
+        replayMenu.add(saveReplayMenuItem);
+        replayMenu.add(openReplayMenuItem);
+
+        replaySpeedMenu = new JMenu("Speed");
+        replaySpeedMenuItems = new JRadioButtonMenuItem[REPLAY_SPEEDS.length];
+        ButtonGroup replaySpeedButtonGroup = new ButtonGroup();
+
+        for (int i = 0; i < REPLAY_SPEEDS.length; i++)
+        {
+            replaySpeedMenuItems[i] = new JRadioButtonMenuItem(REPLAY_SPEEDS[i] + "x", REPLAY_SPEEDS[i] == 1);
+            replaySpeedButtonGroup.add(replaySpeedMenuItems[i]);
+            replaySpeedMenu.add(replaySpeedMenuItems[i]);
+        }
+
+        replayMenu.add(new JSeparator());
+        replayMenu.add(replaySpeedMenu);
+
         helpMenu = new JMenu("Help");
         aboutMenuItem = new JMenuItem("About");
         helpMenu.add(aboutMenuItem);
 
         menuBar.add(fileMenu);
+        menuBar.add(viewMenu);
+        menuBar.add(replayMenu);
         menuBar.add(helpMenu);
 
         fileMenu.addMenuListener(menuListener);
+        viewMenu.addMenuListener(menuListener);
+        replayMenu.addMenuListener(menuListener);
         helpMenu.addMenuListener(menuListener);
 
         newGameMenuItem.addActionListener(menuListener);
         highScoresMenuItem.addActionListener(menuListener);
         closeMenuItem.addActionListener(menuListener);
+        activeRenderingMenuItem.addActionListener(menuListener);
+        smoothMovementMenuItem.addActionListener(menuListener);
+        debugHudMenuItem.addActionListener(menuListener);
+
+        for (JRadioButtonMenuItem themeMenuItem : themeMenuItems)
+        {
+            themeMenuItem.addActionListener(menuListener);
+        }
+
+        replayLastGameMenuItem.addActionListener(menuListener);
+        skipReplayMenuItem.addActionListener(menuListener);
+        saveReplayMenuItem.addActionListener(menuListener);
+        openReplayMenuItem.addActionListener(menuListener);
+
+        for (JRadioButtonMenuItem replaySpeedMenuItem : replaySpeedMenuItems)
+        {
+            replaySpeedMenuItem.addActionListener(menuListener);
+        }
+
         aboutMenuItem.addActionListener(menuListener);
 
         this.setJMenuBar(menuBar);
@@ -204,8 +377,10 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
 
     private void handleNewHighScore()
     {
-        if (snakeGame.getScore() > 0)
+        if (snakeGame.getScore() > 0 && snakeGame.getLastReplay() != null)
         {
+            GameMode gameMode = getGameMode(snakeGame.getLastReplay());
+            HighScoreManager highScoreMngr = highScoreStore.getHighScoreManager(gameMode);
             int rank = highScoreMngr.getHighScoreRank(snakeGame.getScore());
 
             if (rank != -1)
@@ -251,26 +426,71 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
 
                 if (!cancelled)
                 {
-                    highScoreMngr.updateHighScore(rank, name, snakeGame.getScore());
+                    highScoreMngr.addHighScore(name, snakeGame.getScore());
 
-                    try
-                    {
-                        highScoreMngr.saveHighScores();
+                    highScoreMngr.saveHighScoresAsync().whenComplete((saved, ex) -> {
+                        if (ex != null)
+                        {
+                            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "An error occured while trying to save the high score file (" + highScoreMngr.getHighScoreFilePath() + ").\n\nError Message: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                        }
+                    });
 
-                        showHighScoreWindow();
-                    }
-                    catch (IOException ex)
-                    {
-                        JOptionPane.showMessageDialog(null, "An error occured while trying to save the high score file (" + highScoreMngr.HIGH_SCORE_FILE_PATH + ").\n\nError Message: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                    showHighScoreWindow(gameMode);
                 }
             }
         }
     }
 
-    private void showHighScoreWindow()
+    private void saveLastReplay()
+    {
+        Replay replay = snakeGame.getLastReplay();
+
+        if (replay == null)
+        {
+            JOptionPane.showMessageDialog(null, "There is no finished game to save yet.", "Replay", JOptionPane.INFORMATION_MESSAGE);
+
+            return;
+        }
+
+        JFileChooser fileChooser = new JFileChooser();
+
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
+        {
+            File file = fileChooser.getSelectedFile();
+
+            try (OutputStream out = new FileOutputStream(file))
+            {
+                replay.write(out);
+            }
+            catch (IOException ex)
+            {
+                JOptionPane.showMessageDialog(null, "An error occured while trying to save the replay file (" + file.getPath() + ").\n\nError Message: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void openReplay()
     {
-        HighScoresWindow hsWindow = new HighScoresWindow(this, highScoreMngr);
+        JFileChooser fileChooser = new JFileChooser();
+
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION)
+        {
+            File file = fileChooser.getSelectedFile();
+
+            try (InputStream in = new FileInputStream(file))
+            {
+                snakeGame.playReplay(Replay.read(in));
+            }
+            catch (IOException | IllegalArgumentException ex)
+            {
+                JOptionPane.showMessageDialog(null, "An error occured while trying to open the replay file (" + file.getPath() + ").\n\nError Message: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    private void showHighScoreWindow(GameMode gameMode)
+    {
+        HighScoresWindow hsWindow = new HighScoresWindow(this, highScoreStore, gameMode);
         hsWindow.setVisible(true);
     }
 
@@ -290,7 +510,10 @@ public class SnakeGameWindow extends JFrame implements SnakeGameContainerListene
     {
         this.setTitle(WINDOW_TITLE + " | Game Over! Final Score: " + snakeGame.getScore());
 
-        handleNewHighScore();
+        if (!snakeGame.isReplaying())
+        {
+            handleNewHighScore();
+        }
     }
 
     @Override